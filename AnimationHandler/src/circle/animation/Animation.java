@@ -38,6 +38,12 @@ import circle.animation.internal.Position;
 
 /**
  * Animation contains the information for an animation.
+ * <p>
+ * When added to an AnimationGroup an Animation is a template shared by every
+ * displaying copy of it. Only the frames, frame size, name and number of
+ * frames are used. The frame, position, loop and rotation of each displaying
+ * copy are kept by the AnimationGroup, so the matching fields here are only
+ * used when drawing an Animation yourself.
  * 
  * @author Brian Jensen
  */
@@ -62,6 +68,10 @@ public class Animation implements Serializable, Cloneable {
 	public transient boolean rotate;
 	public transient double rotationAmount = 0;
 	public transient AffineTransform at = new AffineTransform();
+	// Views of each frame over the sheet pixels, made when first asked for
+	private transient FrameView[] views;
+	// Views of the part of each frame that is not fully transparent
+	private transient FrameView[] trimmedViews;
 
 	/**
 	 * Creates a new Animation using either the Strip format or the Sprite Sheet
@@ -122,6 +132,51 @@ public class Animation implements Serializable, Cloneable {
 		return this.animation.frameBuffer[frame];
 	}
 
+	/**
+	 * Gets a view of a frame straight over the pixels of the sheet. Unlike
+	 * getFrameImage no pixels are copied and nothing is created after the
+	 * first call for a frame.
+	 * 
+	 * @param frame
+	 *            The frame you would like to get.
+	 * @return FrameView covering the whole frame
+	 */
+	public FrameView getFrameView(int frame) {
+		FrameView[] v = views;
+		if (v == null)
+			views = v = new FrameView[numOfFrames];
+		if (v[frame] == null)
+			v[frame] = new FrameView(animation.getPixels(), animation.getPixelOffset(frame),
+					animation.getScanlineStride(), 0, 0, frameSize.width, frameSize.height);
+		return v[frame];
+	}
+
+	/**
+	 * Gets a view of only the part of a frame that is not fully transparent.
+	 * The x and y of the view give where it starts inside the frame.
+	 * 
+	 * @param frame
+	 *            The frame you would like to get.
+	 * @return FrameView of the part of the frame that is not fully
+	 *         transparent, or null if the whole frame is transparent
+	 */
+	public FrameView getTrimmedFrameView(int frame) {
+		BufferedImage trimmed = animation.trimmed[frame];
+		if (trimmed == null)
+			return null;
+		FrameView[] v = trimmedViews;
+		if (v == null)
+			trimmedViews = v = new FrameView[numOfFrames];
+		if (v[frame] == null) {
+			int stride = animation.getScanlineStride();
+			int x = animation.trimX[frame];
+			int y = animation.trimY[frame];
+			v[frame] = new FrameView(animation.getPixels(), animation.getPixelOffset(frame) + y * stride + x,
+					stride, x, y, trimmed.getWidth(), trimmed.getHeight());
+		}
+		return v[frame];
+	}
+
 	/**
 	 * Sets the frame the Animation is currently on
 	 * 
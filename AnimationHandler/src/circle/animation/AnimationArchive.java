@@ -0,0 +1,679 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPInputStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * AnimationArchive reads and writes AnimationGroups in the binary .frm2
+ * format instead of Java Serialization. Reading an archive creates nothing
+ * but the images and Animations it holds, so it is fast and safe to read
+ * files from anywhere.
+ * <p>
+ * Every number is big-endian. An archive starts with a header:
+ * 
+ * <pre>
+ * int   magic "FRM2"
+ * int   version (2)
+ * int   number of templates
+ * </pre>
+ * 
+ * followed by one table entry per template:
+ * 
+ * <pre>
+ * UTF   name (DataOutput.writeUTF)
+ * int   frame width, frame height, number of frames
+ * int   flags, {@link #PNG} if the sheet is PNG encoded
+ * int   sheet width, sheet height
+ * long  offset of the sheet from the start of the archive
+ * int   length of the sheet in bytes
+ * </pre>
+ * 
+ * and then the sheets. A sheet that is not PNG encoded is width * height ARGB
+ * ints.
+ * 
+ * @author Brian Jensen
+ */
+public class AnimationArchive {
+	/**
+	 * First four bytes of every archive, "FRM2"
+	 */
+	public static final int MAGIC = 0x46524D32;
+	/**
+	 * Version of the format written
+	 */
+	public static final int VERSION = 2;
+	/**
+	 * Flag of a template whose sheet is PNG encoded
+	 */
+	public static final int PNG = 1;
+	// Largest sheet accepted in pixels
+	private static final int MAX_PIXELS = 1 << 26;
+	// Bytes a PNG sheet may take beyond its raw ARGB size, a filter byte per
+	// row and 1/256 of the raw size for chunk and block headers
+	private static final int MAX_PNG_OVERHEAD = 1 << 20;
+	// Bytes of a sheet read before the array is grown to fit more
+	private static final int READ_CHUNK = 1 << 16;
+
+	private AnimationArchive() {
+	}
+
+	/**
+	 * Table entry of one template
+	 */
+	static class Entry {
+		String name;
+		int frameWidth;
+		int frameHeight;
+		int numOfFrames;
+		int flags;
+		int sheetWidth;
+		int sheetHeight;
+		long offset;
+		int length;
+	}
+
+	/**
+	 * Writes the usable Animations of an AnimationGroup as an archive
+	 * 
+	 * @param group
+	 *            AnimationGroup to write
+	 * @param out
+	 *            Stream to write to. It is not closed
+	 * @param png
+	 *            true to PNG encode the sheets, false to store raw pixels
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public static void write(AnimationGroup group, OutputStream out, boolean png) throws IOException {
+		String[] names = group.getNames();
+		Arrays.sort(names);
+		Entry[] entries = new Entry[names.length];
+		byte[][] sheets = new byte[names.length][];
+		for (int i = 0; i < names.length; i++) {
+			Animation anim = group.getUsable(names[i]);
+			anim.init();
+			BufferedImage sheet = anim.animation.sheet;
+			Entry e = new Entry();
+			e.name = names[i];
+			e.frameWidth = anim.frameSize.width;
+			e.frameHeight = anim.frameSize.height;
+			e.numOfFrames = anim.numOfFrames;
+			e.flags = png ? PNG : 0;
+			e.sheetWidth = sheet.getWidth();
+			e.sheetHeight = sheet.getHeight();
+			sheets[i] = png ? encodePNG(sheet) : encodeRaw(sheet);
+			e.length = sheets[i].length;
+			entries[i] = e;
+		}
+		long offset = headerLength(entries);
+		for (Entry e : entries) {
+			e.offset = offset;
+			offset += e.length;
+		}
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(entries.length);
+		writeTable(entries, data);
+		for (byte[] sheet : sheets)
+			data.write(sheet);
+		data.flush();
+	}
+
+	/**
+	 * Writes the usable Animations of an AnimationGroup to an archive file
+	 * 
+	 * @param group
+	 *            AnimationGroup to write
+	 * @param file
+	 *            Location and name of the file being saved
+	 * @param png
+	 *            true to PNG encode the sheets, false to store raw pixels
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public static void write(AnimationGroup group, String file, boolean png) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			write(group, out, png);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the table entries
+	 * 
+	 * @param entries
+	 *            table entries to write
+	 * @param data
+	 *            Stream to write to
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	private static void writeTable(Entry[] entries, DataOutputStream data) throws IOException {
+		for (Entry e : entries) {
+			data.writeUTF(e.name);
+			data.writeInt(e.frameWidth);
+			data.writeInt(e.frameHeight);
+			data.writeInt(e.numOfFrames);
+			data.writeInt(e.flags);
+			data.writeInt(e.sheetWidth);
+			data.writeInt(e.sheetHeight);
+			data.writeLong(e.offset);
+			data.writeInt(e.length);
+		}
+	}
+
+	/**
+	 * Gets the length of the header and table, which is where the first sheet
+	 * starts
+	 * 
+	 * @param entries
+	 *            table entries
+	 * @return Number of bytes in the header and table
+	 */
+	static long headerLength(Entry[] entries) {
+		long length = 3 * 4;
+		// Name, six ints, offset and length
+		for (Entry e : entries)
+			length += 2 + modifiedUTFLength(e.name) + 6 * 4 + 8 + 4;
+		return length;
+	}
+
+	/**
+	 * Reads the header and table of an archive
+	 * 
+	 * @param data
+	 *            Stream positioned at the start of the archive
+	 * @return table entries of the archive
+	 * @throws IOException
+	 *             if reading fails or the archive is not valid
+	 */
+	static Entry[] readTable(DataInputStream data) throws IOException {
+		if (data.readInt() != MAGIC)
+			throw new IOException("Not an animation archive");
+		int version = data.readInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported animation archive version " + version);
+		int count = data.readInt();
+		if (count < 0)
+			throw new IOException("Bad template count " + count);
+		Entry[] entries = new Entry[count];
+		for (int i = 0; i < count; i++) {
+			Entry e = new Entry();
+			e.name = data.readUTF();
+			e.frameWidth = data.readInt();
+			e.frameHeight = data.readInt();
+			e.numOfFrames = data.readInt();
+			e.flags = data.readInt();
+			e.sheetWidth = data.readInt();
+			e.sheetHeight = data.readInt();
+			e.offset = data.readLong();
+			e.length = data.readInt();
+			check(e);
+			entries[i] = e;
+		}
+		return entries;
+	}
+
+	/**
+	 * Makes sure a table entry describes a sheet that can be loaded
+	 * 
+	 * @param e
+	 *            table entry to check
+	 * @throws IOException
+	 *             if the entry is not valid
+	 */
+	private static void check(Entry e) throws IOException {
+		if (e.frameWidth <= 0 || e.frameHeight <= 0 || e.sheetWidth < e.frameWidth || e.sheetHeight < e.frameHeight
+				|| (long) e.sheetWidth * e.sheetHeight > MAX_PIXELS || e.offset < 0 || e.length < 0)
+			throw new IOException("Bad template " + e.name + " in animation archive");
+		if (e.numOfFrames != (e.sheetWidth / e.frameWidth) * (e.sheetHeight / e.frameHeight))
+			throw new IOException("Bad number of frames for " + e.name + " in animation archive");
+		long raw = 4L * e.sheetWidth * e.sheetHeight;
+		if ((e.flags & PNG) == 0 ? e.length != raw : e.length > raw + raw / 256 + e.sheetHeight + MAX_PNG_OVERHEAD)
+			throw new IOException("Bad sheet length for " + e.name + " in animation archive");
+	}
+
+	/**
+	 * Reads an archive into a new AnimationGroup. The AnimationGroup is ready
+	 * to use, calling init() on it does nothing more.
+	 * 
+	 * @param in
+	 *            Stream to read the archive from. It is not closed
+	 * @return the AnimationGroup read
+	 * @throws IOException
+	 *             if reading fails or the archive is not valid
+	 */
+	public static AnimationGroup read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+		Entry[] entries = readTable(data);
+		long position = headerLength(entries);
+		// Sheets are read in the order they are stored
+		Entry[] order = entries.clone();
+		Arrays.sort(order, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry a, Entry b) {
+				return Long.compare(a.offset, b.offset);
+			}
+		});
+		AnimationGroup group = new AnimationGroup();
+		for (Entry e : order) {
+			if (e.offset < position)
+				throw new IOException("Overlapping sheets in animation archive");
+			skipFully(data, e.offset - position);
+			byte[] bytes = readSheet(data, e.length);
+			position = e.offset + e.length;
+			group.injectNewUsable(e.name, decode(e, ByteBuffer.wrap(bytes)));
+		}
+		return group;
+	}
+
+	/**
+	 * Reads an archive file into a new AnimationGroup
+	 * 
+	 * @param file
+	 *            Location and name of the archive
+	 * @return the AnimationGroup read
+	 * @throws IOException
+	 *             if reading fails or the archive is not valid
+	 */
+	public static AnimationGroup read(String file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Creates the Animation of a template from its sheet
+	 * 
+	 * @param e
+	 *            table entry of the template
+	 * @param bytes
+	 *            buffer holding the sheet from its position on
+	 * @return the Animation
+	 * @throws IOException
+	 *             if the sheet cannot be decoded
+	 */
+	static Animation decode(Entry e, ByteBuffer bytes) throws IOException {
+		BufferedImage sheet;
+		if ((e.flags & PNG) != 0) {
+			byte[] encoded = new byte[e.length];
+			bytes.get(encoded);
+			BufferedImage png = readPng(encoded, e);
+			sheet = png;
+			if (png.getType() != BufferedImage.TYPE_INT_ARGB) {
+				sheet = new BufferedImage(e.sheetWidth, e.sheetHeight, BufferedImage.TYPE_INT_ARGB);
+				Graphics2D g2 = sheet.createGraphics();
+				g2.drawImage(png, 0, 0, null);
+				g2.dispose();
+			}
+		} else {
+			int[] argb = new int[e.sheetWidth * e.sheetHeight];
+			bytes.asIntBuffer().get(argb);
+			sheet = new BufferedImage(e.sheetWidth, e.sheetHeight, BufferedImage.TYPE_INT_ARGB);
+			sheet.getRaster().setDataElements(0, 0, e.sheetWidth, e.sheetHeight, argb);
+		}
+		return new Animation(e.name, sheet, e.frameWidth, e.frameHeight);
+	}
+
+	/**
+	 * Decodes the PNG sheet of a template. The size in the PNG header is
+	 * checked before decoding so a sheet claiming to be larger than its table
+	 * entry is never allocated.
+	 * 
+	 * @param encoded
+	 *            PNG encoded sheet
+	 * @param e
+	 *            table entry of the template
+	 * @return the sheet
+	 * @throws IOException
+	 *             if the sheet is not a PNG of the size in the table entry
+	 */
+	private static BufferedImage readPng(byte[] encoded, Entry e) throws IOException {
+		Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("png");
+		if (!readers.hasNext())
+			throw new IOException("No PNG reader for animation archive");
+		ImageReader reader = readers.next();
+		ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded));
+		try {
+			reader.setInput(in, true, true);
+			if (reader.getWidth(0) != e.sheetWidth || reader.getHeight(0) != e.sheetHeight)
+				throw new IOException("Bad PNG sheet for " + e.name + " in animation archive");
+			return reader.read(0);
+		} finally {
+			reader.dispose();
+			in.close();
+		}
+	}
+
+	/**
+	 * Opens either an archive or a Serialized AnimationGroup, compressed or
+	 * not, and gets it ready to use. Serialized AnimationGroups run Java
+	 * Serialization so should only be opened from trusted files.
+	 * 
+	 * @param in
+	 *            Stream to read from. It is not closed
+	 * @return the AnimationGroup read, already initialized
+	 * @throws IOException
+	 *             if reading fails or the file is not an AnimationGroup
+	 */
+	public static AnimationGroup open(InputStream in) throws IOException {
+		BufferedInputStream buffered = new BufferedInputStream(in);
+		buffered.mark(4);
+		DataInputStream data = new DataInputStream(buffered);
+		int magic = data.readInt();
+		buffered.reset();
+		if (magic == MAGIC)
+			return read(buffered);
+		InputStream legacy = buffered;
+		// GZIP streams start with 0x1f8b
+		if ((magic >>> 16) == 0x1f8b)
+			legacy = new GZIPInputStream(buffered);
+		try {
+			Object o = new ObjectInputStream(legacy).readObject();
+			if (!(o instanceof AnimationGroup))
+				throw new IOException("Not an AnimationGroup: " + o.getClass().getName());
+			AnimationGroup group = (AnimationGroup) o;
+			group.init();
+			return group;
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Reads an archive file into a new AnimationGroup in the background so
+	 * the caller is not stalled
+	 * 
+	 * @param file
+	 *            Location and name of the archive
+	 * @param executor
+	 *            Executor to read on
+	 * @return CompletableFuture completed with the AnimationGroup read, or
+	 *         completed exceptionally if reading fails or the archive is not
+	 *         valid
+	 */
+	public static CompletableFuture<AnimationGroup> readAsync(final String file, Executor executor) {
+		return loadAsync(new Callable<AnimationGroup>() {
+			@Override
+			public AnimationGroup call() throws IOException {
+				return read(file);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Reads an archive file into a new AnimationGroup in the background on
+	 * the common ForkJoinPool
+	 * 
+	 * @param file
+	 *            Location and name of the archive
+	 * @return CompletableFuture completed with the AnimationGroup read
+	 * @see AnimationArchive#readAsync(String, Executor)
+	 */
+	public static CompletableFuture<AnimationGroup> readAsync(String file) {
+		return readAsync(file, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Opens either an archive or a Serialized AnimationGroup in the
+	 * background, the same as {@link #open(InputStream)}
+	 * 
+	 * @param in
+	 *            Stream to read from. It is closed once read
+	 * @param executor
+	 *            Executor to read on
+	 * @return CompletableFuture completed with the AnimationGroup read,
+	 *         already initialized, or completed exceptionally if reading fails
+	 *         or the stream is not an AnimationGroup
+	 */
+	public static CompletableFuture<AnimationGroup> openAsync(final InputStream in, Executor executor) {
+		return loadAsync(new Callable<AnimationGroup>() {
+			@Override
+			public AnimationGroup call() throws IOException {
+				try {
+					return open(in);
+				} finally {
+					in.close();
+				}
+			}
+		}, executor);
+	}
+
+	/**
+	 * Opens either an archive or a Serialized AnimationGroup in the
+	 * background on the common ForkJoinPool
+	 * 
+	 * @param in
+	 *            Stream to read from. It is closed once read
+	 * @return CompletableFuture completed with the AnimationGroup read
+	 * @see AnimationArchive#openAsync(InputStream, Executor)
+	 */
+	public static CompletableFuture<AnimationGroup> openAsync(InputStream in) {
+		return openAsync(in, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Runs a load on an Executor
+	 * 
+	 * @param task
+	 *            Loads and returns the AnimationGroup
+	 * @param executor
+	 *            Executor to load on
+	 * @return CompletableFuture completed by the load
+	 */
+	private static CompletableFuture<AnimationGroup> loadAsync(final Callable<AnimationGroup> task,
+			Executor executor) {
+		final CompletableFuture<AnimationGroup> future = new CompletableFuture<AnimationGroup>();
+		Runnable load = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					future.complete(task.call());
+				} catch (Throwable t) {
+					future.completeExceptionally(t);
+				}
+			}
+		};
+		try {
+			executor.execute(load);
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * Converts a Serialized AnimationGroup (.frm) to an archive
+	 * 
+	 * @param legacy
+	 *            Stream to read the Serialized AnimationGroup from
+	 * @param out
+	 *            Stream to write the archive to
+	 * @param png
+	 *            true to PNG encode the sheets, false to store raw pixels
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+	public static void convert(InputStream legacy, OutputStream out, boolean png) throws IOException {
+		write(open(legacy), out, png);
+	}
+
+	/**
+	 * Converts a Serialized AnimationGroup file to an archive file
+	 * 
+	 * @param args
+	 *            legacy .frm file, .frm2 file to write and optionally "raw" to
+	 *            store raw pixels instead of PNG
+	 * @throws IOException
+	 *             if reading or writing fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: AnimationArchive <legacy.frm> <archive.frm2> [raw]");
+			return;
+		}
+		InputStream in = new FileInputStream(args[0]);
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]));
+		try {
+			convert(in, out, !(args.length > 2 && args[2].equals("raw")));
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+
+	/**
+	 * PNG encodes a sheet
+	 * 
+	 * @param sheet
+	 *            sheet to encode
+	 * @return the PNG bytes
+	 * @throws IOException
+	 *             if encoding fails
+	 */
+	private static byte[] encodePNG(BufferedImage sheet) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(sheet, "png", baos);
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Stores a sheet as big-endian ARGB ints
+	 * 
+	 * @param sheet
+	 *            sheet to store
+	 * @return the pixel bytes
+	 */
+	private static byte[] encodeRaw(BufferedImage sheet) {
+		int w = sheet.getWidth();
+		int h = sheet.getHeight();
+		int[] argb = sheet.getRGB(0, 0, w, h, null, 0, w);
+		ByteBuffer bytes = ByteBuffer.allocate(argb.length * 4);
+		bytes.asIntBuffer().put(argb);
+		return bytes.array();
+	}
+
+	/**
+	 * Gets the length of a String written with DataOutput.writeUTF, not
+	 * counting the two length bytes
+	 * 
+	 * @param s
+	 *            String to measure
+	 * @return Number of bytes
+	 */
+	static int modifiedUTFLength(String s) {
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			length += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+		}
+		return length;
+	}
+
+	/**
+	 * Reads a sheet, growing the array as the bytes arrive so a damaged
+	 * length cannot allocate much more than the stream holds
+	 * 
+	 * @param in
+	 *            Stream to read from
+	 * @param length
+	 *            Number of bytes in the sheet
+	 * @return bytes of the sheet
+	 * @throws IOException
+	 *             if the stream ends first
+	 */
+	private static byte[] readSheet(InputStream in, int length) throws IOException {
+		byte[] bytes = new byte[Math.min(length, READ_CHUNK)];
+		int n = 0;
+		while (n < length) {
+			if (n == bytes.length)
+				bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * n));
+			int read = in.read(bytes, n, bytes.length - n);
+			if (read < 0)
+				throw new EOFException();
+			n += read;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Skips bytes of a stream
+	 * 
+	 * @param in
+	 *            Stream to skip
+	 * @param n
+	 *            Number of bytes to skip
+	 * @throws IOException
+	 *             if the stream ends first
+	 */
+	private static void skipFully(InputStream in, long n) throws IOException {
+		while (n > 0) {
+			long skipped = in.skip(n);
+			if (skipped <= 0) {
+				if (in.read() < 0)
+					throw new EOFException();
+				skipped = 1;
+			}
+			n -= skipped;
+		}
+	}
+}
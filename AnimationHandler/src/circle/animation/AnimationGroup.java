@@ -27,30 +27,105 @@
 package circle.animation;
 
 import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
-import java.awt.image.BufferedImage;
+import java.awt.Rectangle;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.management.JMException;
+
+import circle.animation.internal.DirtyRegion;
+import circle.animation.internal.InstanceStore;
 import circle.animation.internal.Position;
+import circle.animation.internal.RotationTable;
+import circle.animation.internal.SpatialGrid;
 
 /**
  * AnimationGroup contains an array of Animation Objects. Using a UUID to track
  * each animation. AnimationsGroups created are Serializable.
+ * <p>
+ * Animations can also be tracked with a long handle from
+ * {@link #spawn(String, int, int, int)} which does not create a UUID. A handle
+ * kept after its Animation is removed is safely ignored by
+ * {@link #move(long, int, int)} and {@link #kill(long)}.
  * 
  * @author Brian Jensen
  */
 public class AnimationGroup implements Serializable {
 
 	private static final long serialVersionUID = 8747907961688422176L;
+	/**
+	 * Flag for {@link #spawn(String, int, int, int)} to loop the Animation
+	 * instead of playing it once
+	 */
+	public static final int LOOP = 1;
+	/**
+	 * Frames per second played by {@link #update(long, FinishedListener)}
+	 * when no frame rate was set
+	 */
+	public static final double DEFAULT_FRAME_RATE = 60.0;
+	// nanosDelta meaning advance exactly one frame
+	static final long TICK = Long.MIN_VALUE;
 	// Each Animation Object accessed by its name
 	private HashMap<String, Animation> usableAnimationGroup;
-	// Holds the Animations being used and drawn to the screen
-	private transient ConcurrentHashMap<UUID, Animation> displayGroup;
+	// Holds the state of the Animations being used and drawn to the screen
+	private transient InstanceStore displayGroup;
+	// Usable Animations by template index used by displayGroup. Replaced, never
+	// changed, when an Animation is added so Snapshots can share it
+	private transient Animation[] templates;
+	// Template index of each usable Animation name
+	private transient HashMap<String, Integer> templateIndex;
+	// Template indexes of replaced Animations that are still displaying. They
+	// are released once their last instance is removed
+	private transient boolean[] retired;
+	private transient int retiredCount;
+	// Where usable Animations not yet loaded come from, null if not in use
+	private transient AnimationLibrary library;
+	// Copies of displayGroup for drawing without locking, null if not in use
+	private transient volatile SnapshotBuffer snapshots;
+	// Rounds rotations to steps of a full turn when drawing, null for exact
+	private transient volatile RotationTable rotationTable;
+	// Rotated frames already drawn, null to rotate while drawing
+	private transient volatile RotationCache rotationCache;
+	// Packed frames to draw unrotated Animations from, null if not in use
+	private transient volatile TextureAtlas atlas;
+	// Splits large updates across threads, null to always update on one thread
+	private transient ParallelUpdater parallel;
+	// Largest distance any usable Animation can reach from its position when
+	// drawn at any rotation, the diagonal of its frame
+	private transient int maxExtent;
+	// Slots found by collect, reused while locked
+	private transient int[] found;
+	// True to draw ordered by layer, template and frame
+	private transient volatile boolean batched;
+	// Nanoseconds each frame is shown by update(long) for each template
+	// index, 0 to use defaultFrameNanos
+	private transient long[] frameNanos;
+	// Nanoseconds each frame is shown when no frame rate was set
+	private transient long defaultFrameNanos;
+	// Frame durations set by name so replacing an Animation keeps its rate
+	private transient HashMap<String, Long> frameDurations;
+	// Number of Animations whose frame or rotation changed in the last update
+	private transient int changedCount;
+	// Areas changed since dirty regions were last taken, null if not tracked
+	private transient DirtyRegion dirty;
+	// Areas changed in snapshot mode that the published snapshot does not
+	// show yet, handed to dirty when the next snapshot is published
+	private transient DirtyRegion unpublished;
+	// Counts and times what this AnimationGroup does, null if metrics are off
+	private transient volatile AnimationMetrics metrics;
+	// High bits of every UUID given out. The low bits hold the handle
 	private UUID ID;
 
 	/**
@@ -66,8 +141,70 @@ public class AnimationGroup implements Serializable {
 	 * AnimationGroup
 	 */
 	public void init() {
-		for (String s : this.usableAnimationGroup.keySet())
-			this.usableAnimationGroup.get(s).init();
+		init(null, null);
+	}
+
+	/**
+	 * Initialized the AnimationGroup, decoding and splitting the frames of
+	 * each usable Animation at the same time on an Executor. This must be
+	 * called before using AnimationGroup
+	 * 
+	 * @param executor
+	 *            Executor to initialize the Animations on, null to initialize
+	 *            them one at a time on this thread
+	 * @param listener
+	 *            Told each time an Animation has been initialized. Can be null
+	 */
+	public void init(Executor executor, final InitListener listener) {
+		final String[] names = getNames();
+		final int total = names.length;
+		if (executor == null) {
+			for (int i = 0; i < total; i++) {
+				this.usableAnimationGroup.get(names[i]).init();
+				if (listener != null)
+					listener.initialized(names[i], i + 1, total);
+			}
+			setup();
+			return;
+		}
+		final CountDownLatch done = new CountDownLatch(total);
+		final AtomicInteger count = new AtomicInteger();
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		for (final String name : names) {
+			final Animation animation = this.usableAnimationGroup.get(name);
+			Runnable task = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						animation.init();
+						if (listener != null)
+							listener.initialized(name, count.incrementAndGet(), total);
+					} catch (Throwable e) {
+						error.compareAndSet(null, e);
+					} finally {
+						done.countDown();
+					}
+				}
+			};
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				task.run();
+			}
+		}
+		boolean interrupted = false;
+		while (true) {
+			try {
+				done.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (error.get() != null)
+			throw new RuntimeException("Could not initialize AnimationGroup", error.get());
 		setup();
 	}
 
@@ -75,10 +212,130 @@ public class AnimationGroup implements Serializable {
 	 * Creates all the Arrays used by AnimationGroup
 	 */
 	private void setup() {
-		this.displayGroup = new ConcurrentHashMap<>();
+		SpatialGrid grid = this.displayGroup != null ? this.displayGroup.getGrid() : null;
+		this.displayGroup = new InstanceStore();
+		if (grid != null)
+			this.displayGroup.setGrid(new SpatialGrid(grid.getCellSize()));
+		this.templates = new Animation[0];
+		this.retired = new boolean[0];
+		this.retiredCount = 0;
+		this.maxExtent = 0;
+		this.found = new int[64];
+		if (this.dirty != null) {
+			this.dirty.clear();
+			this.unpublished.clear();
+		}
+		this.frameNanos = new long[0];
+		if (this.frameDurations == null)
+			this.frameDurations = new HashMap<String, Long>();
+		if (this.defaultFrameNanos == 0)
+			this.defaultFrameNanos = (long) (1e9 / DEFAULT_FRAME_RATE);
+		// Rotated frames are kept by template index, which is given out again
+		if (this.rotationCache != null)
+			this.rotationCache.clear();
+		// So is the atlas. Dropping it lets the frames it packed be collected
+		this.atlas = null;
+		this.templateIndex = new HashMap<String, Integer>();
+		for (String s : this.usableAnimationGroup.keySet())
+			addTemplate(s, this.usableAnimationGroup.get(s));
+		// Snapshot mode stays on, drawing the new empty displayGroup
+		if (this.snapshots != null)
+			publishSnapshot();
 		ID = UUID.randomUUID();
 	}
 
+	/**
+	 * Gives a usable Animation a template index in displayGroup. Replacing an
+	 * Animation gives it a new index so Animations already displaying keep
+	 * playing the one they were added with. The index of the replaced
+	 * Animation is released once nothing is displaying it, and released
+	 * indexes are given out again.
+	 * 
+	 * @param name
+	 *            Name of the usable Animation
+	 * @param animation
+	 *            The usable Animation
+	 */
+	private void addTemplate(String name, Animation animation) {
+		// Not set up yet after Serialization. init() adds every usable Animation
+		if (this.templates == null)
+			return;
+		int index = 0;
+		while (index < this.templates.length && this.templates[index] != null)
+			index++;
+		// Snapshots share the array, so it is copied instead of changed
+		Animation[] templates = Arrays.copyOf(this.templates, Math.max(index + 1, this.templates.length));
+		templates[index] = animation;
+		if (index == this.templates.length) {
+			this.frameNanos = Arrays.copyOf(this.frameNanos, templates.length);
+			this.retired = Arrays.copyOf(this.retired, templates.length);
+		}
+		Long duration = this.frameDurations.get(name);
+		this.frameNanos[index] = duration != null ? duration : 0;
+		this.templates = templates;
+		Integer replaced = this.templateIndex.put(name, index);
+		if (replaced != null) {
+			if (this.displayGroup.count(replaced) == 0)
+				releaseTemplate(replaced);
+			else {
+				this.retired[replaced] = true;
+				this.retiredCount++;
+			}
+		}
+		this.maxExtent = Math.max(this.maxExtent, extent(animation));
+	}
+
+	/**
+	 * Releases a template index nothing is displaying so its Animation can be
+	 * garbage collected and the index given out again
+	 * 
+	 * @param index
+	 *            Template index to release
+	 */
+	private void releaseTemplate(int index) {
+		Animation[] templates = this.templates.clone();
+		templates[index] = null;
+		this.templates = templates;
+		this.frameNanos[index] = 0;
+		int extent = 0;
+		for (Animation a : templates)
+			if (a != null)
+				extent = Math.max(extent, extent(a));
+		this.maxExtent = extent;
+		// Rotated frames are kept by template index, which is given out again
+		RotationCache cache = this.rotationCache;
+		if (cache != null)
+			cache.clear();
+	}
+
+	/**
+	 * Gets the largest distance an Animation can reach from its position when
+	 * drawn at any rotation
+	 * 
+	 * @param animation
+	 *            Animation to measure
+	 * @return Diagonal of the frames of the Animation, rounded up
+	 */
+	private static int extent(Animation animation) {
+		int w = animation.frameSize.width;
+		int h = animation.frameSize.height;
+		return (int) Math.ceil(Math.sqrt((double) w * w + (double) h * h));
+	}
+
+	/**
+	 * Releases the template indexes of replaced Animations whose last instance
+	 * has been removed
+	 */
+	private void releaseRetired() {
+		InstanceStore d = this.displayGroup;
+		for (int i = 0; i < this.retired.length; i++)
+			if (this.retired[i] && d.count(i) == 0) {
+				this.retired[i] = false;
+				this.retiredCount--;
+				releaseTemplate(i);
+			}
+	}
+
 	/**
 	 * Adds a new Animation into the usable Animations available to draw to
 	 * screen. If the name exists already in the usable Animations it will fail
@@ -103,6 +360,9 @@ public class AnimationGroup implements Serializable {
 			return false;
 		}
 		usableAnimationGroup.put(name, animation);
+		synchronized (this) {
+			addTemplate(name, animation);
+		}
 		return true;
 	}
 
@@ -120,6 +380,9 @@ public class AnimationGroup implements Serializable {
 	 */
 	public void overwriteUsable(String name, Animation animation) {
 		usableAnimationGroup.put(name, animation);
+		synchronized (this) {
+			addTemplate(name, animation);
+		}
 	}
 
 	/**
@@ -152,18 +415,12 @@ public class AnimationGroup implements Serializable {
 	 * @return UUID generated for accessing elements of the displaying Animation
 	 */
 	public UUID add(String name, Position pos, Double angleDeg, double rotationAmount, boolean persistent) {
-		ID = UUID.randomUUID();
-		Animation anim = this.usableAnimationGroup.get(name).clone();
-		anim.setPos(pos);
-		anim.setCurrentFrame(0);
-		if (angleDeg != null) {
-			anim.rotation = angleDeg;
-			anim.rotate = true;
-			anim.rotationAmount = rotationAmount;
-		}
-		this.displayGroup.put(ID, anim);
-		makePersistent(ID, persistent);
-		return ID;
+		long handle;
+		if (angleDeg != null)
+			handle = spawn(name, pos.x, pos.y, angleDeg, rotationAmount, persistent ? LOOP : 0);
+		else
+			handle = spawn(name, pos.x, pos.y, persistent ? LOOP : 0);
+		return toUUID(handle);
 	}
 
 	/**
@@ -227,9 +484,7 @@ public class AnimationGroup implements Serializable {
 	 * @return UUID generated for accessing elements of the displaying Animation
 	 */
 	public UUID add(String name, Position pos, boolean persistent) {
-		UUID ID = add(name, pos);
-		makePersistent(ID, persistent);
-		return ID;
+		return add(name, pos, null, 0, persistent);
 	}
 
 	/**
@@ -250,10 +505,309 @@ public class AnimationGroup implements Serializable {
 	}
 
 	/**
-	 * Changes an Animation being used to either play once or loop
+	 * Adds a new Animation you would like to display on screen without
+	 * creating a UUID
+	 * 
+	 * @param name
+	 *            Name of the Animation you would like to use
+	 * @param x
+	 *            The x position of the Animation
+	 * @param y
+	 *            The y position of the Animation
+	 * @param flags
+	 *            {@link #LOOP} to loop, 0 to play once
+	 * @return handle for accessing elements of the displaying Animation
+	 */
+	public long spawn(String name, int x, int y, int flags) {
+		int template = templateFor(name);
+		synchronized (this) {
+			long handle = this.displayGroup.add(template, x, y);
+			this.displayGroup.loop[this.displayGroup.size - 1] = (flags & LOOP) != 0;
+			markDirty(this.displayGroup.size - 1);
+			AnimationMetrics metrics = this.metrics;
+			if (metrics != null)
+				metrics.spawned();
+			return handle;
+		}
+	}
+
+	/**
+	 * Adds a new rotated Animation you would like to display on screen without
+	 * creating a UUID
+	 * 
+	 * @param name
+	 *            Name of the Animation you would like to use
+	 * @param x
+	 *            The x position of the Animation
+	 * @param y
+	 *            The y position of the Animation
+	 * @param angleDeg
+	 *            Angle of rotation -180 - 180
+	 * @param rotationAmount
+	 *            amount to rotate each frame -180 - 180
+	 * @param flags
+	 *            {@link #LOOP} to loop, 0 to play once
+	 * @return handle for accessing elements of the displaying Animation
+	 */
+	public long spawn(String name, int x, int y, double angleDeg, double rotationAmount, int flags) {
+		int template = templateFor(name);
+		synchronized (this) {
+			long handle = this.displayGroup.add(template, x, y);
+			int slot = this.displayGroup.size - 1;
+			this.displayGroup.loop[slot] = (flags & LOOP) != 0;
+			this.displayGroup.rotation[slot] = angleDeg;
+			this.displayGroup.rotate[slot] = true;
+			this.displayGroup.rotationAmount[slot] = rotationAmount;
+			markDirty(slot);
+			AnimationMetrics metrics = this.metrics;
+			if (metrics != null)
+				metrics.spawned();
+			return handle;
+		}
+	}
+
+	/**
+	 * Gets the template index of a usable Animation, loading it from the
+	 * AnimationLibrary if it has not been loaded yet. Loading is done without
+	 * holding the lock so drawing is not held up.
+	 * 
+	 * @param name
+	 *            Name of the Animation
+	 * @return template index of the Animation
+	 * @throws IllegalArgumentException
+	 *             if there is no usable Animation with the name
+	 */
+	private int templateFor(String name) {
+		AnimationLibrary library;
+		synchronized (this) {
+			Integer index = this.templateIndex.get(name);
+			if (index != null)
+				return index;
+			library = this.library;
+		}
+		Animation animation = null;
+		if (library != null) {
+			AnimationMetrics metrics = this.metrics;
+			long start = metrics == null ? 0 : System.nanoTime();
+			try {
+				animation = library.load(name);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Could not load Animation " + name, e);
+			}
+			if (metrics != null && animation != null)
+				metrics.loaded(name, System.nanoTime() - start);
+		}
+		synchronized (this) {
+			// Another thread may have loaded it first
+			Integer index = this.templateIndex.get(name);
+			if (index != null)
+				return index;
+			if (animation == null)
+				throw new IllegalArgumentException("No usable Animation named " + name);
+			this.usableAnimationGroup.put(name, animation);
+			addTemplate(name, animation);
+			return this.templateIndex.get(name);
+		}
+	}
+
+	/**
+	 * Loads usable Animations from the AnimationLibrary now instead of the
+	 * first time they are added
+	 * 
+	 * @param names
+	 *            Names of the Animations to load
+	 * @throws IllegalArgumentException
+	 *             if there is no usable Animation with one of the names
+	 */
+	public void prefetch(String... names) {
+		for (String name : names)
+			templateFor(name);
+	}
+
+	/**
+	 * Drops a usable Animation loaded from the AnimationLibrary so its frames
+	 * can be garbage collected. It is loaded again the next time it is added.
+	 * 
+	 * @param name
+	 *            Name of the Animation
+	 * @return false if the Animation is displaying, not loaded or cannot be
+	 *         loaded again from the library
+	 */
+	public boolean evict(String name) {
+		synchronized (this) {
+			Integer index = this.templateIndex.get(name);
+			if (index == null || this.library == null || !this.library.contains(name))
+				return false;
+			if (this.displayGroup.count(index) > 0)
+				return false;
+			this.templateIndex.remove(name);
+			this.usableAnimationGroup.remove(name);
+			releaseTemplate(index);
+			return true;
+		}
+	}
+
+	/**
+	 * Sets where usable Animations that have not been added yet are loaded
+	 * from
+	 * 
+	 * @param library
+	 *            AnimationLibrary to load from, null to only use Animations
+	 *            already added
+	 * @see AnimationLibrary#createGroup()
+	 */
+	public void setLibrary(AnimationLibrary library) {
+		synchronized (this) {
+			this.library = library;
+		}
+	}
+
+	/**
+	 * @return AnimationLibrary usable Animations are loaded from, null if not
+	 *         in use
+	 */
+	public AnimationLibrary getLibrary() {
+		return this.library;
+	}
+
+	/**
+	 * Moves an Animation being drawn to the screen
+	 * 
+	 * @param handle
+	 *            handle of the Animation from spawn
+	 * @param x
+	 *            X position of the Animation
+	 * @param y
+	 *            Y position of the Animation
+	 * @return false if the Animation is no longer displaying
+	 */
+	public boolean move(long handle, int x, int y) {
+		synchronized (this) {
+			int slot = this.displayGroup.slot(handle);
+			if (slot < 0)
+				return false;
+			markDirty(slot);
+			this.displayGroup.move(slot, x, y);
+			markDirty(slot);
+			return true;
+		}
+	}
+
+	/**
+	 * Sets the layer of an Animation being drawn to the screen. When drawing
+	 * batched, lower layers are drawn first so higher layers cover them.
+	 * Animations start on layer 0.
+	 * 
+	 * @param handle
+	 *            handle of the Animation from spawn
+	 * @param layer
+	 *            Layer to draw the Animation on
+	 * @return false if the Animation is no longer displaying
+	 * @see AnimationGroup#setBatchedDraw(boolean)
+	 */
+	public boolean setLayer(long handle, int layer) {
+		synchronized (this) {
+			int slot = this.displayGroup.slot(handle);
+			if (slot < 0)
+				return false;
+			this.displayGroup.layer[slot] = layer;
+			markDirty(slot);
+			return true;
+		}
+	}
+
+	/**
+	 * Gets the layer of an Animation being drawn to the screen
+	 * 
+	 * @param handle
+	 *            handle of the Animation from spawn
+	 * @return Layer of the Animation, 0 if it is no longer displaying
+	 */
+	public int getLayer(long handle) {
+		synchronized (this) {
+			int slot = this.displayGroup.slot(handle);
+			return slot < 0 ? 0 : this.displayGroup.layer[slot];
+		}
+	}
+
+	/**
+	 * Removes an Animation being drawn to the screen
+	 * 
+	 * @param handle
+	 *            handle of the Animation from spawn
+	 * @return false if the Animation is no longer displaying
+	 */
+	public boolean kill(long handle) {
+		synchronized (this) {
+			int slot = this.displayGroup.slot(handle);
+			if (slot < 0)
+				return false;
+			markDirty(slot);
+			this.displayGroup.removeSlot(slot);
+			if (this.retiredCount > 0)
+				releaseRetired();
+			AnimationMetrics metrics = this.metrics;
+			if (metrics != null)
+				metrics.killed();
+			return true;
+		}
+	}
+
+	/**
+	 * Checks if an Animation is still being drawn to the screen
+	 * 
+	 * @param handle
+	 *            handle of the Animation from spawn
+	 * @return true if the Animation is still displaying
+	 */
+	public boolean isAlive(long handle) {
+		synchronized (this) {
+			return this.displayGroup.slot(handle) >= 0;
+		}
+	}
+
+	/**
+	 * Get the position of an Animation using the handle of the Animation being
+	 * drawn to the screen
+	 * 
+	 * @param handle
+	 *            handle of the Animation from spawn
+	 * @return the X, Y of the Animation or null if the Animation is no longer
+	 *         displaying
+	 */
+	public Position getPosition(long handle) {
+		synchronized (this) {
+			int slot = this.displayGroup.slot(handle);
+			if (slot < 0)
+				return null;
+			return new Position(this.displayGroup.x[slot], this.displayGroup.y[slot]);
+		}
+	}
+
+	/**
+	 * Creates the UUID given out for a handle. The UUID holds the handle so
+	 * no lookup table or random number is needed.
+	 * 
+	 * @param handle
+	 *            handle of the Animation
+	 * @return UUID of the Animation
+	 */
+	private UUID toUUID(long handle) {
+		return new UUID(this.ID.getMostSignificantBits(), handle);
+	}
+
+	/**
+	 * Gets the handle held by a UUID given out by this AnimationGroup
+	 * 
+	 * @param hashID
+	 *            UUID of the Animation
+	 * @return handle of the Animation or 0 if the UUID did not come from this
+	 *         AnimationGroup
 	 */
-	private void makePersistent(UUID ID, boolean persistent) {
-		this.displayGroup.get(ID).loop = persistent;
+	private long toHandle(UUID hashID) {
+		if (hashID == null || hashID.getMostSignificantBits() != this.ID.getMostSignificantBits())
+			return 0;
+		return hashID.getLeastSignificantBits();
 	}
 
 	/**
@@ -263,9 +817,7 @@ public class AnimationGroup implements Serializable {
 	 *            UUID of the animation to be removed
 	 */
 	public void remove(UUID hashID) {
-		synchronized (this) {
-			this.displayGroup.remove(hashID);
-		}
+		kill(toHandle(hashID));
 	}
 
 	/**
@@ -274,10 +826,12 @@ public class AnimationGroup implements Serializable {
 	 * 
 	 * @param hashID
 	 *            UUID of the Animation being drawn
-	 * @return the X, Y array for the position of the Animation
+	 * @return the X, Y array for the position of the Animation or null if
+	 *         the Animation is no longer displaying. Changing the Position
+	 *         returned does not move the Animation.
 	 */
 	public Position getPosition(UUID hashID) {
-		return this.displayGroup.get(hashID).getPos();
+		return getPosition(toHandle(hashID));
 	}
 
 	/**
@@ -290,7 +844,7 @@ public class AnimationGroup implements Serializable {
 	 *            X, Y of the Animation
 	 */
 	public void setPosition(UUID hashID, Position newPos) {
-		this.displayGroup.get(hashID).setPos(newPos);
+		setPosition(hashID, newPos.x, newPos.y);
 	}
 
 	/**
@@ -305,7 +859,7 @@ public class AnimationGroup implements Serializable {
 	 *            Y position of the Animation
 	 */
 	public void setPosition(UUID hashID, int x, int y) {
-		setPosition(hashID, new Position(x, y));
+		move(toHandle(hashID), x, y);
 	}
 
 	/**
@@ -313,60 +867,1037 @@ public class AnimationGroup implements Serializable {
 	 * removing Animations that are over
 	 * 
 	 * @return An Array of UUID of all the elements that were removed
+	 * @see AnimationGroup#update(FinishedListener)
 	 */
 	public ArrayList<UUID> update() {
-		ArrayList<UUID> ret = new ArrayList<UUID>();
-		Iterator<UUID> i = this.displayGroup.keySet().iterator();
-		while (i.hasNext()) {
-			UUID ID = i.next();
-			this.displayGroup.get(ID).rotation += this.displayGroup.get(ID).rotationAmount;
-			int frame = this.displayGroup.get(ID).getCurrentFrame() + 1;
-			if (frame >= this.displayGroup.get(ID).numOfFrames) {
-				if (this.displayGroup.get(ID).loop) {
-					this.displayGroup.get(ID).setCurrentFrame(0);
-				} else {
-					remove(ID);
-					ret.add(ID);
-				}
-			} else
-				this.displayGroup.get(ID).setCurrentFrame(frame);
-		}
+		final ArrayList<UUID> ret = new ArrayList<UUID>();
+		update(new FinishedListener() {
+			@Override
+			public void finished(long handle) {
+				ret.add(toUUID(handle));
+			}
+		});
 		return ret;
 	}
 
 	/**
-	 * Draws all Animations being used to the screen
+	 * Updates each frame of the Animation increasing the frame by one and
+	 * removing Animations that are over. Nothing is created while updating so
+	 * this can be called every tick without producing garbage.
 	 * 
-	 * @param g2
-	 *            Graphics2D being used to draw Images to the screen
+	 * @param listener
+	 *            Told the handle of each Animation removed. Can be null
+	 * @return Number of Animations removed
 	 */
-	public void draw(Graphics2D g2) {
+	public int update(FinishedListener listener) {
+		return step(TICK, listener);
+	}
+
+	/**
+	 * Plays each Animation for an amount of time instead of one frame. Each
+	 * usable Animation shows its frames at its own frame rate, and time left
+	 * over that is less than a frame is kept for the next update, so
+	 * playback speed does not depend on how often this is called. Rotating
+	 * Animations turn by their rotation amount for each frame played.
+	 * 
+	 * @param nanosDelta
+	 *            Nanoseconds since the last update
+	 * @return Number of Animations removed
+	 * @see AnimationGroup#setFrameRate(String, double)
+	 */
+	public int update(long nanosDelta) {
+		return update(nanosDelta, null);
+	}
+
+	/**
+	 * Plays each Animation for an amount of time instead of one frame without
+	 * creating anything
+	 * 
+	 * @param nanosDelta
+	 *            Nanoseconds since the last update
+	 * @param listener
+	 *            Told the handle of each Animation removed. Can be null
+	 * @return Number of Animations removed
+	 * @see AnimationGroup#update(long)
+	 */
+	public int update(long nanosDelta, FinishedListener listener) {
+		return step(Math.max(nanosDelta, 0), listener);
+	}
+
+	/**
+	 * Advances every Animation and removes the Animations that are over
+	 * 
+	 * @param nanosDelta
+	 *            Nanoseconds to play, or TICK for one frame
+	 * @param listener
+	 *            Told the handle of each Animation removed. Can be null
+	 * @return Number of Animations removed
+	 */
+	private int step(long nanosDelta, FinishedListener listener) {
 		synchronized (this) {
-			for (UUID ID : this.displayGroup.keySet()) {
-				if (this.displayGroup.get(ID).rotate) {
-					AffineTransform at = new AffineTransform();
-					BufferedImage temp = this.displayGroup.get(ID)
-							.getFrameImage(this.displayGroup.get(ID).getCurrentFrame());
-					int x = this.displayGroup.get(ID).getPosX();
-					int y = this.displayGroup.get(ID).getPosY();
-					at.translate(x + temp.getWidth() / 2, y + temp.getHeight() / 2);
-					if (this.displayGroup.get(ID).rotate)
-						at.rotate(Math.toRadians(this.displayGroup.get(ID).rotation));
-					at.translate(-temp.getWidth() / 2, -temp.getHeight() / 2);
-					g2.drawImage(temp, at, null);
-				} else {
-					g2.drawImage(this.displayGroup.get(ID).getFrameImage(this.displayGroup.get(ID).getCurrentFrame()),
-							this.displayGroup.get(ID).getPosX(), this.displayGroup.get(ID).getPosY(), null);
-				}
+			AnimationMetrics metrics = this.metrics;
+			long start = metrics == null ? 0 : System.nanoTime();
+			InstanceStore d = this.displayGroup;
+			ParallelUpdater p = this.parallel;
+			int removed;
+			if (p != null && d.size >= p.threshold)
+				removed = updateParallel(p, nanosDelta, listener);
+			else
+				removed = updateSerial(nanosDelta, listener);
+			if (removed > 0 && this.retiredCount > 0)
+				releaseRetired();
+			if (this.snapshots != null)
+				publishSnapshot();
+			if (metrics != null)
+				metrics.updated(System.nanoTime() - start, d.size, removed);
+			return removed;
+		}
+	}
+
+	/**
+	 * Updates the Animations one slot at a time on this thread
+	 * 
+	 * @param nanosDelta
+	 *            Nanoseconds to play, or TICK for one frame
+	 * @param listener
+	 *            Told the handle of each Animation removed. Can be null
+	 * @return Number of Animations removed
+	 */
+	private int updateSerial(long nanosDelta, FinishedListener listener) {
+		InstanceStore d = this.displayGroup;
+		Animation[] templates = this.templates;
+		int removed = 0;
+		int changed = 0;
+		int i = 0;
+		while (i < d.size) {
+			if (advance(d, templates, i, nanosDelta)) {
+				markDirty(i);
+				long handle = d.handleAt(i);
+				// The last Animation moves into slot i so it is updated next
+				d.removeSlot(i);
+				removed++;
+				if (listener != null)
+					listener.finished(handle);
+				continue;
+			}
+			if (d.changed[i]) {
+				changed++;
+				markDirty(i);
 			}
+			i++;
 		}
+		this.changedCount = changed;
+		return removed;
 	}
 
 	/**
-	 * @return returns amount of Animations in displayGroup
+	 * Updates the Animations in parallel chunks. Finished Animations are
+	 * removed from the highest slot down once every chunk is done, so the
+	 * result is the same no matter how many threads were used.
+	 * 
+	 * @param p
+	 *            ParallelUpdater to split the update with
+	 * @param nanosDelta
+	 *            Nanoseconds to play, or TICK for one frame
+	 * @param listener
+	 *            Told the handle of each Animation removed. Can be null
+	 * @return Number of Animations removed
 	 */
-	public int size() {
-		return this.displayGroup.size();
+	private int updateParallel(ParallelUpdater p, long nanosDelta, FinishedListener listener) {
+		InstanceStore d = this.displayGroup;
+		int size = d.size;
+		p.ensureCapacity(d.template.length);
+		p.advance(this, size, nanosDelta);
+		int removed = 0;
+		int changed = 0;
+		for (int i = 0; i < size; i++)
+			if (p.expired[i]) {
+				p.finished[removed++] = d.handleAt(i);
+				markDirty(i);
+			} else if (d.changed[i]) {
+				changed++;
+				markDirty(i);
+			}
+		// Only Animations that are not finished are moved into freed slots
+		for (int i = size - 1; i >= 0; i--)
+			if (p.expired[i])
+				d.removeSlot(i);
+		this.changedCount = changed;
+		if (listener != null)
+			for (int i = 0; i < removed; i++)
+				listener.finished(p.finished[i]);
+		return removed;
+	}
+
+	/**
+	 * Advances the frame and rotation of the Animations in a range of slots.
+	 * Called by ParallelUpdater from several threads at once, each with its own
+	 * range.
+	 * 
+	 * @param from
+	 *            first slot to advance
+	 * @param to
+	 *            slot after the last slot to advance
+	 * @param expired
+	 *            set true for each slot whose Animation finished playing
+	 * @param nanosDelta
+	 *            Nanoseconds to play, or TICK for one frame
+	 */
+	void advance(int from, int to, boolean[] expired, long nanosDelta) {
+		InstanceStore d = this.displayGroup;
+		Animation[] templates = this.templates;
+		for (int i = from; i < to; i++)
+			expired[i] = advance(d, templates, i, nanosDelta);
+	}
+
+	/**
+	 * Advances the frame and rotation of the Animation in one slot
+	 * 
+	 * @param d
+	 *            displaying Animations
+	 * @param templates
+	 *            usable Animations by template index
+	 * @param i
+	 *            slot to advance
+	 * @param nanosDelta
+	 *            Nanoseconds to play, or TICK for one frame
+	 * @return true if the Animation finished playing and should be removed
+	 */
+	private boolean advance(InstanceStore d, Animation[] templates, int i, long nanosDelta) {
+		int template = d.template[i];
+		long steps = 1;
+		if (nanosDelta != TICK) {
+			long duration = this.frameNanos[template];
+			if (duration == 0)
+				duration = this.defaultFrameNanos;
+			long elapsed = d.elapsed[i] + nanosDelta;
+			if (elapsed < duration) {
+				d.elapsed[i] = elapsed;
+				d.changed[i] = false;
+				return false;
+			}
+			steps = elapsed / duration;
+			d.elapsed[i] = elapsed - steps * duration;
+		}
+		d.changed[i] = true;
+		d.rotation[i] += d.rotationAmount[i] * steps;
+		long frame = d.frame[i] + steps;
+		int frames = templates[template].numOfFrames;
+		if (frame >= frames) {
+			if (!d.loop[i])
+				return true;
+			frame %= frames;
+		}
+		d.frame[i] = (int) frame;
+		return false;
+	}
+
+	/**
+	 * Sets how many frames per second a usable Animation plays at in
+	 * {@link #update(long)}. The rate is kept if the Animation is replaced or
+	 * not loaded yet.
+	 * 
+	 * @param name
+	 *            Name of the usable Animation
+	 * @param fps
+	 *            Frames per second
+	 */
+	public void setFrameRate(String name, double fps) {
+		if (!(fps > 0))
+			throw new IllegalArgumentException("fps must be positive");
+		setFrameDuration(name, Math.max((long) (1e9 / fps), 1));
+	}
+
+	/**
+	 * Sets how long each frame of a usable Animation is shown in
+	 * {@link #update(long)}
+	 * 
+	 * @param name
+	 *            Name of the usable Animation
+	 * @param nanos
+	 *            Nanoseconds each frame is shown
+	 */
+	public void setFrameDuration(String name, long nanos) {
+		if (nanos <= 0)
+			throw new IllegalArgumentException("nanos must be positive");
+		synchronized (this) {
+			this.frameDurations.put(name, nanos);
+			Integer index = this.templateIndex.get(name);
+			if (index != null)
+				this.frameNanos[index] = nanos;
+		}
+	}
+
+	/**
+	 * Gets how long each frame of a usable Animation is shown in
+	 * {@link #update(long)}
+	 * 
+	 * @param name
+	 *            Name of the usable Animation
+	 * @return Nanoseconds each frame is shown
+	 */
+	public long getFrameDuration(String name) {
+		synchronized (this) {
+			Long nanos = this.frameDurations.get(name);
+			return nanos != null ? nanos : this.defaultFrameNanos;
+		}
+	}
+
+	/**
+	 * Sets the frames per second played by {@link #update(long)} for usable
+	 * Animations with no frame rate of their own. Starts at
+	 * {@link #DEFAULT_FRAME_RATE}.
+	 * 
+	 * @param fps
+	 *            Frames per second
+	 */
+	public void setDefaultFrameRate(double fps) {
+		if (!(fps > 0))
+			throw new IllegalArgumentException("fps must be positive");
+		synchronized (this) {
+			this.defaultFrameNanos = Math.max((long) (1e9 / fps), 1);
+		}
+	}
+
+	/**
+	 * Checks if the frame or rotation of an Animation changed in the last
+	 * update. An Animation that did not change looks the same as it did
+	 * before the update, so it does not need to be drawn again.
+	 * 
+	 * @param handle
+	 *            handle of the Animation from spawn
+	 * @return true if the Animation changed or was added since the last
+	 *         update, false if it did not or is no longer displaying
+	 */
+	public boolean isFrameChanged(long handle) {
+		synchronized (this) {
+			int slot = this.displayGroup.slot(handle);
+			return slot >= 0 && this.displayGroup.changed[slot];
+		}
+	}
+
+	/**
+	 * Gets the number of Animations whose frame or rotation changed in the
+	 * last update. When this and the number removed are both 0, nothing needs
+	 * to be drawn again.
+	 * 
+	 * @return Number of Animations that changed
+	 */
+	public int getChangedCount() {
+		return this.changedCount;
+	}
+
+	/**
+	 * Updates large AnimationGroups in parallel. When at least threshold
+	 * Animations are displaying, update splits them into chunks that are
+	 * advanced at the same time on the executor.
+	 * 
+	 * @param executor
+	 *            Executor to run chunks on, null to always update on one
+	 *            thread
+	 * @param chunks
+	 *            Number of chunks to split the Animations into
+	 * @param threshold
+	 *            Fewest Animations displaying before updating in parallel
+	 */
+	public void setParallelUpdate(Executor executor, int chunks, int threshold) {
+		synchronized (this) {
+			this.parallel = executor == null || chunks < 2 ? null : new ParallelUpdater(executor, chunks, threshold);
+		}
+	}
+
+	/**
+	 * Updates large AnimationGroups in parallel on the common ForkJoinPool
+	 * 
+	 * @param threshold
+	 *            Fewest Animations displaying before updating in parallel
+	 * @see AnimationGroup#setParallelUpdate(Executor, int, int)
+	 */
+	public void setParallelUpdate(int threshold) {
+		setParallelUpdate(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism() + 1, threshold);
+	}
+
+	/**
+	 * Turns snapshot mode on or off. In snapshot mode each update publishes a
+	 * copy of the displaying Animations and draw(Graphics2D) draws the newest
+	 * copy without locking, so drawing never waits on updating. Animations
+	 * added or moved show up once the next update or {@link #publish()} is
+	 * done. Only one thread may draw at a time in snapshot mode. Dirty regions
+	 * of changes are only handed out once a snapshot showing them is
+	 * published.
+	 * 
+	 * @param enabled
+	 *            true to draw from published snapshots
+	 */
+	public void setSnapshotMode(boolean enabled) {
+		synchronized (this) {
+			if (!enabled) {
+				this.snapshots = null;
+				// Drawing shows every change again
+				releaseDirty();
+			} else if (this.snapshots == null) {
+				this.snapshots = new SnapshotBuffer();
+				publishSnapshot();
+			}
+		}
+	}
+
+	/**
+	 * @return true if draw(Graphics2D) draws published snapshots
+	 * @see AnimationGroup#setSnapshotMode(boolean)
+	 */
+	public boolean isSnapshotMode() {
+		return this.snapshots != null;
+	}
+
+	/**
+	 * Publishes a snapshot of the displaying Animations now instead of waiting
+	 * for the next update. Does nothing if snapshot mode is off.
+	 */
+	public void publish() {
+		synchronized (this) {
+			if (this.snapshots != null)
+				publishSnapshot();
+		}
+	}
+
+	/**
+	 * Publishes a snapshot and hands out the dirty regions of the changes it
+	 * shows. Must be called while locked in snapshot mode.
+	 */
+	private void publishSnapshot() {
+		this.snapshots.publish(this.templates, this.displayGroup);
+		releaseDirty();
+	}
+
+	/**
+	 * Moves the areas changed since the last snapshot into the dirty regions
+	 * handed out by takeDirtyRegions. Must be called while locked.
+	 */
+	private void releaseDirty() {
+		if (this.dirty == null)
+			return;
+		this.dirty.add(this.unpublished);
+		this.unpublished.clear();
+	}
+
+	/**
+	 * Draws all Animations being used to the screen
+	 * 
+	 * @param g2
+	 *            Graphics2D being used to draw Images to the screen
+	 */
+	public void draw(Graphics2D g2) {
+		draw(g2, null, null);
+	}
+
+	/**
+	 * Draws only the Animations being used that can be seen in a viewport.
+	 * Animations are drawn in the same order as {@link #draw(Graphics2D)}.
+	 * With a spatial index only the Animations near the viewport are looked
+	 * at.
+	 * 
+	 * @param g2
+	 *            Graphics2D being used to draw Images to the screen
+	 * @param viewport
+	 *            Area of the world being drawn
+	 * @see AnimationGroup#setSpatialIndex(int)
+	 */
+	public void draw(Graphics2D g2, Rectangle viewport) {
+		draw(g2, null, viewport);
+	}
+
+	/**
+	 * Draws all Animations being used onto a RenderTarget. Rotations are
+	 * rounded by the RotationTable if one is set. The TextureAtlas and
+	 * RotationCache are only used when drawing to a Graphics2D.
+	 * 
+	 * @param target
+	 *            RenderTarget to draw onto
+	 */
+	public void draw(RenderTarget target) {
+		draw(null, target, null);
+	}
+
+	/**
+	 * Draws only the Animations being used that can be seen in a viewport
+	 * onto a RenderTarget
+	 * 
+	 * @param target
+	 *            RenderTarget to draw onto
+	 * @param viewport
+	 *            Area of the world being drawn
+	 * @see AnimationGroup#draw(Graphics2D, Rectangle)
+	 */
+	public void draw(RenderTarget target, Rectangle viewport) {
+		draw(null, target, viewport);
+	}
+
+	/**
+	 * Draws the Animations being used
+	 * 
+	 * @param g2
+	 *            Graphics2D to draw with, null to draw onto target
+	 * @param target
+	 *            RenderTarget to draw onto when g2 is null
+	 * @param viewport
+	 *            Only draw Animations that can be seen in this area, null to
+	 *            draw every Animation
+	 */
+	private void draw(Graphics2D g2, RenderTarget target, Rectangle viewport) {
+		AnimationMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		SnapshotBuffer snapshots = this.snapshots;
+		if (snapshots != null) {
+			SnapshotBuffer.Snapshot d = snapshots.latest();
+			FrameDrawer drawer = FrameDrawer.begin(g2, target, d.templates, this.rotationTable, this.rotationCache,
+					this.atlas);
+			int[] slots = null;
+			int n = d.size;
+			if (viewport != null) {
+				slots = drawer.slots(d.size);
+				n = 0;
+				for (int i = 0; i < d.size; i++)
+					if (intersects(d.templates[d.template[i]], d.x[i], d.y[i], d.rotate[i], viewport))
+						slots[n++] = i;
+			}
+			if (this.batched)
+				slots = drawer.sort(slots, n, d.layer, d.template, d.frame);
+			for (int j = 0; j < n; j++) {
+				int i = slots == null ? j : slots[j];
+				drawer.draw(d.template[i], d.frame[i], d.x[i], d.y[i], d.rotate[i], d.rotation[i]);
+			}
+			drawer.end();
+			if (metrics != null)
+				drawn(metrics, start, d.rotate, slots, n);
+			return;
+		}
+		synchronized (this) {
+			InstanceStore d = this.displayGroup;
+			FrameDrawer drawer = FrameDrawer.begin(g2, target, this.templates, this.rotationTable,
+					this.rotationCache, this.atlas);
+			int[] slots = null;
+			int n = d.size;
+			if (viewport != null) {
+				n = collect(viewport);
+				slots = this.found;
+			}
+			if (this.batched)
+				slots = drawer.sort(slots, n, d.layer, d.template, d.frame);
+			for (int j = 0; j < n; j++) {
+				int i = slots == null ? j : slots[j];
+				drawer.draw(d.template[i], d.frame[i], d.x[i], d.y[i], d.rotate[i], d.rotation[i]);
+			}
+			drawer.end();
+			if (metrics != null)
+				drawn(metrics, start, d.rotate, slots, n);
+		}
+	}
+
+	/**
+	 * Records a draw in the metrics
+	 * 
+	 * @param metrics
+	 *            AnimationMetrics to record in
+	 * @param start
+	 *            System.nanoTime() when the draw started
+	 * @param rotate
+	 *            Whether the Animation in each slot is rotated
+	 * @param slots
+	 *            Slots drawn, null if the first n slots were drawn
+	 * @param n
+	 *            Number of Animations drawn
+	 */
+	private static void drawn(AnimationMetrics metrics, long start, boolean[] rotate, int[] slots, int n) {
+		long nanos = System.nanoTime() - start;
+		int rotated = 0;
+		for (int j = 0; j < n; j++)
+			if (rotate[slots == null ? j : slots[j]])
+				rotated++;
+		metrics.drawn(nanos, n - rotated, rotated);
+	}
+
+	/**
+	 * Turns metrics on or off. While off nothing is timed or counted. Turning
+	 * metrics off unregisters them from JMX so the MBeanServer does not keep
+	 * this AnimationGroup, and turning them on again starts new metrics.
+	 * 
+	 * @param enabled
+	 *            true to count and time what this AnimationGroup does
+	 * @throws IllegalStateException
+	 *             if the metrics could not be unregistered from JMX
+	 * @see AnimationGroup#getMetrics()
+	 */
+	public void setMetricsEnabled(boolean enabled) {
+		AnimationMetrics old;
+		synchronized (this) {
+			old = this.metrics;
+			if (enabled) {
+				if (old == null)
+					this.metrics = new AnimationMetrics(this);
+				return;
+			}
+			this.metrics = null;
+		}
+		if (old == null)
+			return;
+		try {
+			old.close();
+		} catch (JMException e) {
+			throw new IllegalStateException("Could not unregister metrics", e);
+		}
+	}
+
+	/**
+	 * @return true if metrics are on
+	 */
+	public boolean isMetricsEnabled() {
+		return this.metrics != null;
+	}
+
+	/**
+	 * Gets the metrics counting what this AnimationGroup does, to read them,
+	 * set a {@link MetricsListener} or register them with JMX
+	 * 
+	 * @return AnimationMetrics, null if metrics are off
+	 * @see AnimationGroup#setMetricsEnabled(boolean)
+	 */
+	public AnimationMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Counts the displaying Animations of each usable Animation name
+	 * 
+	 * @return Number displaying for each name with any displaying
+	 */
+	Map<String, Integer> liveCounts() {
+		synchronized (this) {
+			InstanceStore d = this.displayGroup;
+			Animation[] templates = this.templates;
+			int[] counts = new int[templates.length];
+			for (int i = 0; i < d.size; i++)
+				counts[d.template[i]]++;
+			TreeMap<String, Integer> live = new TreeMap<String, Integer>();
+			for (int t = 0; t < counts.length; t++) {
+				if (counts[t] == 0 || templates[t] == null)
+					continue;
+				// A replaced Animation shares its name with the one replacing it
+				Integer n = live.get(templates[t].name);
+				live.put(templates[t].name, counts[t] + (n == null ? 0 : n));
+			}
+			return live;
+		}
+	}
+
+	/**
+	 * Sets whether the areas of the screen that change are tracked. Once on,
+	 * adding, moving and removing Animations, changing their layer and each
+	 * frame or rotation change in an update all add the area the Animation
+	 * covers. The areas are merged into at most limit rectangles.
+	 * 
+	 * @param limit
+	 *            Most rectangles to merge the changed areas into, 0 to stop
+	 *            tracking
+	 * @see AnimationGroup#takeDirtyRegions()
+	 * @see DirtyRepainter
+	 */
+	public void setDirtyTracking(int limit) {
+		synchronized (this) {
+			this.dirty = limit > 0 ? new DirtyRegion(limit) : null;
+			this.unpublished = limit > 0 ? new DirtyRegion(limit) : null;
+		}
+	}
+
+	/**
+	 * @return true if the areas of the screen that change are tracked
+	 */
+	public boolean isDirtyTracking() {
+		return this.dirty != null;
+	}
+
+	/**
+	 * Gets the areas of the screen that changed since this was last called
+	 * and starts collecting again. Only the areas need to be drawn again.
+	 * 
+	 * @return Rectangles covering every changed area, empty if nothing
+	 *         changed or tracking is off
+	 */
+	public Rectangle[] takeDirtyRegions() {
+		synchronized (this) {
+			DirtyRegion dirty = this.dirty;
+			if (dirty == null)
+				return new Rectangle[0];
+			Rectangle[] ret = new Rectangle[dirty.size()];
+			for (int i = 0; i < ret.length; i++)
+				ret[i] = new Rectangle(dirty.getX(i), dirty.getY(i), dirty.getWidth(i), dirty.getHeight(i));
+			dirty.clear();
+			return ret;
+		}
+	}
+
+	/**
+	 * Adds the area an Animation covers to the dirty regions if they are
+	 * tracked. In snapshot mode the area is held until the next snapshot is
+	 * published, so it is not drawn again from a snapshot without the
+	 * change. Must be called while locked.
+	 * 
+	 * @param slot
+	 *            Slot of the Animation
+	 */
+	private void markDirty(int slot) {
+		DirtyRegion dirty = this.snapshots != null ? this.unpublished : this.dirty;
+		if (dirty == null)
+			return;
+		InstanceStore d = this.displayGroup;
+		Animation animation = this.templates[d.template[slot]];
+		if (animation != null)
+			dirty.addFrame(d.x[slot], d.y[slot], animation.frameSize.width, animation.frameSize.height,
+					d.rotate[slot]);
+	}
+
+	/**
+	 * Sets whether Animations are drawn ordered by layer, then usable
+	 * Animation, then frame instead of in the order they are stored. Frames
+	 * from the same sheet are then drawn one after another and the order
+	 * Animations overlap in only depends on their layers. Animations that
+	 * share all three keep their stored order. Sorting creates no objects.
+	 * 
+	 * @param batched
+	 *            true to draw ordered by layer, usable Animation and frame
+	 * @see AnimationGroup#setLayer(long, int)
+	 */
+	public void setBatchedDraw(boolean batched) {
+		this.batched = batched;
+	}
+
+	/**
+	 * @return true if Animations are drawn ordered by layer, usable Animation
+	 *         and frame
+	 */
+	public boolean isBatchedDraw() {
+		return this.batched;
+	}
+
+	/**
+	 * Finds the Animations being used that overlap an area, for hit tests
+	 * 
+	 * @param area
+	 *            Area to look in
+	 * @return handles of the Animations found
+	 * @see AnimationGroup#query(Rectangle, long[])
+	 */
+	public long[] query(Rectangle area) {
+		synchronized (this) {
+			int count = collect(area);
+			long[] ret = new long[count];
+			for (int j = 0; j < count; j++)
+				ret[j] = this.displayGroup.handleAt(this.found[j]);
+			return ret;
+		}
+	}
+
+	/**
+	 * Finds the Animations being used that overlap an area without creating
+	 * any objects. An Animation overlaps if its frame does, or for a rotated
+	 * Animation the circle its frame turns in.
+	 * 
+	 * @param area
+	 *            Area to look in
+	 * @param handles
+	 *            Filled with the handles of the Animations found
+	 * @return Number of Animations found. Only the first handles.length are
+	 *         stored if more were found
+	 */
+	public int query(Rectangle area, long[] handles) {
+		synchronized (this) {
+			int count = collect(area);
+			for (int j = 0; j < count && j < handles.length; j++)
+				handles[j] = this.displayGroup.handleAt(this.found[j]);
+			return count;
+		}
+	}
+
+	/**
+	 * Keeps a spatial index of where each Animation being used is so
+	 * {@link #draw(Graphics2D, Rectangle)} and {@link #query(Rectangle)} only
+	 * look at the Animations near the area. Adding, moving and removing
+	 * Animations keeps the index up to date.
+	 * 
+	 * @param cellSize
+	 *            Width and Height of each cell of the index, a few times the
+	 *            size of a frame works well. 0 to stop using an index
+	 */
+	public void setSpatialIndex(int cellSize) {
+		synchronized (this) {
+			this.displayGroup.setGrid(null);
+			if (cellSize > 0)
+				this.displayGroup.setGrid(new SpatialGrid(cellSize));
+		}
+	}
+
+	/**
+	 * @return Width and Height of each cell of the spatial index, 0 if not in
+	 *         use
+	 */
+	public int getSpatialIndex() {
+		synchronized (this) {
+			SpatialGrid grid = this.displayGroup.getGrid();
+			return grid != null ? grid.getCellSize() : 0;
+		}
+	}
+
+	/**
+	 * Finds the slots of the Animations being used that overlap an area and
+	 * stores them in found in slot order. Must be called while locked.
+	 * 
+	 * @param area
+	 *            Area to look in
+	 * @return Number of slots found
+	 */
+	private int collect(Rectangle area) {
+		InstanceStore d = this.displayGroup;
+		SpatialGrid grid = d.getGrid();
+		int count = 0;
+		if (grid == null) {
+			for (int i = 0; i < d.size; i++)
+				if (intersects(this.templates[d.template[i]], d.x[i], d.y[i], d.rotate[i], area)) {
+					if (count == this.found.length)
+						this.found = Arrays.copyOf(this.found, count * 2);
+					this.found[count++] = i;
+				}
+			return count;
+		}
+		// Any Animation that overlaps has its position within its extent of the
+		// area
+		int e = this.maxExtent;
+		int x0 = area.x - e, y0 = area.y - e, x1 = area.x + area.width + e, y1 = area.y + area.height + e;
+		int candidates = grid.query(x0, y0, x1, y1, this.found);
+		if (candidates > this.found.length) {
+			this.found = new int[Math.max(candidates, this.found.length * 2)];
+			grid.query(x0, y0, x1, y1, this.found);
+		}
+		for (int j = 0; j < candidates; j++) {
+			int i = d.slotOfIndex(this.found[j]);
+			if (intersects(this.templates[d.template[i]], d.x[i], d.y[i], d.rotate[i], area))
+				this.found[count++] = i;
+		}
+		Arrays.sort(this.found, 0, count);
+		return count;
+	}
+
+	/**
+	 * Checks if a displaying Animation overlaps an area
+	 * 
+	 * @param animation
+	 *            usable Animation being displayed
+	 * @param x
+	 *            x position of the Animation
+	 * @param y
+	 *            y position of the Animation
+	 * @param rotate
+	 *            true if the Animation is drawn rotated
+	 * @param area
+	 *            Area to check
+	 * @return true if the frame, or the circle a rotated frame turns in,
+	 *         overlaps the area
+	 */
+	private static boolean intersects(Animation animation, int x, int y, boolean rotate, Rectangle area) {
+		if (animation == null)
+			return false;
+		int w = animation.frameSize.width;
+		int h = animation.frameSize.height;
+		int left = x, top = y, right = x + w, bottom = y + h;
+		if (rotate) {
+			int r = (int) Math.ceil(Math.sqrt((double) w * w + (double) h * h) / 2);
+			int cx = x + w / 2;
+			int cy = y + h / 2;
+			left = cx - r;
+			top = cy - r;
+			right = cx + r;
+			bottom = cy + r;
+		}
+		return left < area.x + area.width && right > area.x && top < area.y + area.height && bottom > area.y;
+	}
+
+	/**
+	 * Packs every frame of every usable Animation into a TextureAtlas and
+	 * draws unrotated Animations from it. Usable Animations added or replaced
+	 * after building are drawn from their own frames until the atlas is built
+	 * again. init() drops the atlas.
+	 * 
+	 * @param pageSize
+	 *            Width and Height of each page of the atlas, 2048 is a good
+	 *            size
+	 * @return the TextureAtlas built
+	 */
+	public TextureAtlas buildAtlas(int pageSize) {
+		Animation[] templates;
+		synchronized (this) {
+			templates = this.templates;
+		}
+		TextureAtlas atlas = new TextureAtlas(templates, pageSize);
+		this.atlas = atlas;
+		return atlas;
+	}
+
+	/**
+	 * Sets the TextureAtlas unrotated Animations are drawn from. It must have
+	 * been built by this AnimationGroup.
+	 * 
+	 * @param atlas
+	 *            TextureAtlas to draw from, null to draw each frame on its own
+	 */
+	public void setAtlas(TextureAtlas atlas) {
+		this.atlas = atlas;
+	}
+
+	/**
+	 * @return TextureAtlas unrotated Animations are drawn from, null if not in
+	 *         use
+	 */
+	public TextureAtlas getAtlas() {
+		return this.atlas;
+	}
+
+	/**
+	 * Rounds rotations to a number of steps in a full turn when drawing. The
+	 * sine and cosine of each step are worked out once instead of for every
+	 * rotated Animation drawn.
+	 * 
+	 * @param steps
+	 *            Number of steps in a full turn, 0 to draw exact rotations
+	 */
+	public void setRotationSteps(int steps) {
+		this.rotationTable = steps > 0 ? new RotationTable(steps) : null;
+	}
+
+	/**
+	 * Draws rotated Animations from a RotationCache. Each frame is rotated
+	 * once per rotation step and then drawn as a plain image, which is much
+	 * faster than drawing with a transform.
+	 * 
+	 * @param cache
+	 *            RotationCache to use, null to rotate while drawing
+	 */
+	public void setRotationCache(RotationCache cache) {
+		this.rotationCache = cache;
+	}
+
+	/**
+	 * @return RotationCache rotated Animations are drawn from, null if not in
+	 *         use
+	 */
+	public RotationCache getRotationCache() {
+		return this.rotationCache;
+	}
+
+	/**
+	 * @return Number of steps rotations are rounded to when drawing, 0 if
+	 *         exact
+	 * @see AnimationGroup#setRotationSteps(int)
+	 */
+	public int getRotationSteps() {
+		RotationTable table = this.rotationTable;
+		return table == null ? 0 : table.getSteps();
+	}
+
+	/**
+	 * Makes room for a number of displaying Animations so adding them does not
+	 * create any objects. Each displaying Animation takes
+	 * {@link InstanceStore#BYTES_PER_INSTANCE} bytes.
+	 * 
+	 * @param capacity
+	 *            Number of displaying Animations to make room for
+	 */
+	public void ensureCapacity(int capacity) {
+		synchronized (this) {
+			this.displayGroup.ensureCapacity(capacity);
+		}
+	}
+
+	/**
+	 * @return returns amount of Animations in displayGroup
+	 */
+	public int size() {
+		return this.displayGroup.size;
+	}
+
+	/**
+	 * Sets the number of displaying Animations there is room for, growing or
+	 * shrinking to it but never below the number displaying. Removed
+	 * Animations give their room to the next one added, so spawning within
+	 * the capacity creates no objects.
+	 * 
+	 * @param capacity
+	 *            Number of displaying Animations to make room for
+	 * @see AnimationGroup#ensureCapacity(int)
+	 */
+	public void setCapacity(int capacity) {
+		synchronized (this) {
+			this.displayGroup.setCapacity(capacity);
+		}
+	}
+
+	/**
+	 * @return Number of displaying Animations there is room for before adding
+	 *         creates objects
+	 */
+	public int getCapacity() {
+		synchronized (this) {
+			return this.displayGroup.capacity();
+		}
+	}
+
+	/**
+	 * @return Most Animations displaying at once since the pool stats were
+	 *         reset
+	 */
+	public int getPeakSize() {
+		synchronized (this) {
+			return this.displayGroup.getPeak();
+		}
+	}
+
+	/**
+	 * @return Number of Animations added that did not fit in the capacity and
+	 *         had to grow it, since the pool stats were reset
+	 */
+	public long getPoolMisses() {
+		synchronized (this) {
+			return this.displayGroup.getMisses();
+		}
+	}
+
+	/**
+	 * @return Number of Animations added that reused the room of a removed
+	 *         Animation, since the pool stats were reset
+	 */
+	public long getPoolRecycled() {
+		synchronized (this) {
+			return this.displayGroup.getRecycled();
+		}
+	}
+
+	/**
+	 * Sets the pool misses and recycled counts back to 0 and the peak size to
+	 * the number displaying
+	 */
+	public void resetPoolStats() {
+		synchronized (this) {
+			this.displayGroup.resetStats();
+		}
+	}
+
+	/**
+	 * Gets a usable Animation
+	 * 
+	 * @param name
+	 *            Name of the Animation
+	 * @return the Animation or null if there is no Animation with the name
+	 */
+	public Animation getUsable(String name) {
+		return this.usableAnimationGroup.get(name);
 	}
 
 	/**
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * AnimationLibrary maps an archive (.frm2) file into memory and decodes each
+ * Animation only when it is first needed. Opening a library only reads its
+ * table, so startup time and memory grow with the Animations used instead of
+ * with the whole library.
+ * <p>
+ * An AnimationGroup from {@link #createGroup()} loads an Animation from the
+ * library the first time it is added by name or prefetched, and can evict
+ * Animations that are no longer displaying.
+ * 
+ * @author Brian Jensen
+ * @see AnimationArchive
+ */
+public class AnimationLibrary {
+	// The whole archive file mapped into memory
+	private final MappedByteBuffer map;
+	// Table entry of each template by name
+	private final HashMap<String, AnimationArchive.Entry> entries = new HashMap<String, AnimationArchive.Entry>();
+	// Names of the templates in table order
+	private final String[] names;
+
+	/**
+	 * Maps an archive file and reads its table
+	 * 
+	 * @param file
+	 *            Location and name of the archive
+	 * @throws IOException
+	 *             if the file cannot be mapped or is not a valid archive
+	 */
+	public AnimationLibrary(String file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			// The mapping stays valid after the channel is closed
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			raf.close();
+		}
+		AnimationArchive.Entry[] table = AnimationArchive
+				.readTable(new DataInputStream(new BufferStream(map.duplicate())));
+		long header = AnimationArchive.headerLength(table);
+		names = new String[table.length];
+		for (int i = 0; i < table.length; i++) {
+			AnimationArchive.Entry e = table[i];
+			if (e.offset < header || e.offset + e.length > map.capacity())
+				throw new IOException("Sheet of " + e.name + " is outside of the animation archive");
+			names[i] = e.name;
+			entries.put(e.name, e);
+		}
+	}
+
+	/**
+	 * Creates an empty AnimationGroup that loads Animations from this library
+	 * when they are first used
+	 * 
+	 * @return the new AnimationGroup
+	 */
+	public AnimationGroup createGroup() {
+		AnimationGroup group = new AnimationGroup();
+		group.setLibrary(this);
+		return group;
+	}
+
+	/**
+	 * @return Names of every Animation in the library
+	 */
+	public String[] getNames() {
+		return names.clone();
+	}
+
+	/**
+	 * @param name
+	 *            Name of an Animation
+	 * @return true if the library holds an Animation with the name
+	 */
+	public boolean contains(String name) {
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * Decodes an Animation from the library. Each call decodes a new
+	 * Animation. Can be called from several threads at once.
+	 * 
+	 * @param name
+	 *            Name of the Animation
+	 * @return the Animation or null if the library does not hold it
+	 * @throws IOException
+	 *             if the Animation cannot be decoded
+	 */
+	public Animation load(String name) throws IOException {
+		AnimationArchive.Entry e = entries.get(name);
+		if (e == null)
+			return null;
+		ByteBuffer sheet = map.duplicate();
+		sheet.position((int) e.offset);
+		sheet.limit((int) e.offset + e.length);
+		return AnimationArchive.decode(e, sheet.slice());
+	}
+
+	/**
+	 * @return Size of the archive in bytes
+	 */
+	public long getSize() {
+		return map.capacity();
+	}
+
+	/**
+	 * BufferStream reads from a ByteBuffer
+	 */
+	private static class BufferStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		BufferStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining())
+				return -1;
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+	}
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * AnimationMetrics counts what an AnimationGroup is doing so a slow frame
+ * can be traced to updating, drawing or loading. It is only created once
+ * metrics are turned on with
+ * {@link AnimationGroup#setMetricsEnabled(boolean)}; until then the
+ * AnimationGroup does no timing or counting at all.
+ * <p>
+ * The counts can be read directly, watched from JMX once
+ * {@link #register(String)} is called, or pushed to a
+ * {@link MetricsListener} after each update, draw and load.
+ * 
+ * @author Brian Jensen
+ */
+public class AnimationMetrics implements AnimationMetricsMXBean {
+
+	// Nanoseconds spawn and expire rates are measured over
+	private static final long RATE_WINDOW = 1000000000L;
+	// AnimationGroup being measured
+	private final AnimationGroup group;
+	private final AtomicLong spawns = new AtomicLong();
+	private final AtomicLong expires = new AtomicLong();
+	private final AtomicLong kills = new AtomicLong();
+	private final AtomicLong unrotatedDraws = new AtomicLong();
+	private final AtomicLong rotatedDraws = new AtomicLong();
+	private final LatencyHistogram updateLatency = new LatencyHistogram();
+	private final LatencyHistogram drawLatency = new LatencyHistogram();
+	private final LatencyHistogram loadLatency = new LatencyHistogram();
+	private volatile MetricsListener listener;
+	// Name registered with the platform MBeanServer, null if not registered
+	private ObjectName objectName;
+	// True once the AnimationGroup turned these metrics off
+	private boolean closed;
+	// When the current rate window started, 0 to start a new one. Only
+	// changed by updates, which hold the AnimationGroup's lock
+	private volatile long windowStart;
+	// Spawn and expire counts when the current rate window started
+	private long windowSpawns;
+	private long windowExpires;
+	private volatile double spawnRate;
+	private volatile double expireRate;
+
+	/**
+	 * Creates metrics for an AnimationGroup
+	 * 
+	 * @param group
+	 *            AnimationGroup being measured
+	 */
+	AnimationMetrics(AnimationGroup group) {
+		this.group = group;
+	}
+
+	/**
+	 * Counts an Animation added
+	 */
+	void spawned() {
+		spawns.incrementAndGet();
+	}
+
+	/**
+	 * Counts an Animation removed before it finished playing
+	 */
+	void killed() {
+		kills.incrementAndGet();
+	}
+
+	/**
+	 * Records an update and rolls the rate window once it has lasted a
+	 * second. Called while the AnimationGroup is locked.
+	 * 
+	 * @param nanos
+	 *            Nanoseconds the update took
+	 * @param size
+	 *            Number of Animations displaying after the update
+	 * @param expired
+	 *            Number of Animations that finished playing
+	 */
+	void updated(long nanos, int size, int expired) {
+		updateLatency.record(nanos);
+		if (expired > 0)
+			expires.addAndGet(expired);
+		long now = System.nanoTime();
+		long start = windowStart;
+		if (start == 0 || now - start >= RATE_WINDOW) {
+			long s = spawns.get();
+			long e = expires.get();
+			if (start != 0) {
+				double seconds = (now - start) / 1e9;
+				spawnRate = Math.max(s - windowSpawns, 0) / seconds;
+				expireRate = Math.max(e - windowExpires, 0) / seconds;
+			}
+			windowSpawns = s;
+			windowExpires = e;
+			windowStart = now;
+		}
+		MetricsListener l = listener;
+		if (l != null)
+			l.updated(nanos, size, expired);
+	}
+
+	/**
+	 * Records a draw
+	 * 
+	 * @param nanos
+	 *            Nanoseconds the draw took
+	 * @param unrotated
+	 *            Number of Animations drawn unrotated
+	 * @param rotated
+	 *            Number of Animations drawn rotated
+	 */
+	void drawn(long nanos, int unrotated, int rotated) {
+		drawLatency.record(nanos);
+		unrotatedDraws.addAndGet(unrotated);
+		rotatedDraws.addAndGet(rotated);
+		MetricsListener l = listener;
+		if (l != null)
+			l.drawn(nanos, unrotated, rotated);
+	}
+
+	/**
+	 * Records a usable Animation loaded from an AnimationLibrary
+	 * 
+	 * @param name
+	 *            Name of the Animation loaded
+	 * @param nanos
+	 *            Nanoseconds loading took
+	 */
+	void loaded(String name, long nanos) {
+		loadLatency.record(nanos);
+		MetricsListener l = listener;
+		if (l != null)
+			l.loaded(name, nanos);
+	}
+
+	/**
+	 * Sets the listener told about each update, draw and load
+	 * 
+	 * @param listener
+	 *            MetricsListener to tell, null to stop telling
+	 */
+	public void setListener(MetricsListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @return listener told about each update, draw and load, or null
+	 */
+	public MetricsListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Registers these metrics with the platform MBeanServer so they can be
+	 * watched from JMX clients such as JConsole. Registering again under a
+	 * new name replaces the old registration.
+	 * 
+	 * @param name
+	 *            Name to tell this AnimationGroup apart by
+	 * @return ObjectName registered, circle.animation:type=AnimationGroup,
+	 *         name=name
+	 * @throws JMException
+	 *             if the name is already registered or not allowed
+	 * @throws IllegalStateException
+	 *             if the AnimationGroup has turned these metrics off
+	 */
+	public synchronized ObjectName register(String name) throws JMException {
+		if (closed)
+			throw new IllegalStateException("Metrics were turned off");
+		unregister();
+		ObjectName objectName = new ObjectName("circle.animation:type=AnimationGroup,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.objectName = objectName;
+		return objectName;
+	}
+
+	/**
+	 * Removes these metrics from the platform MBeanServer. Does nothing if
+	 * they are not registered.
+	 * 
+	 * @throws JMException
+	 *             if they could not be removed
+	 */
+	public synchronized void unregister() throws JMException {
+		if (objectName == null)
+			return;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(objectName))
+			server.unregisterMBean(objectName);
+		objectName = null;
+	}
+
+	/**
+	 * Unregisters these metrics and stops them being registered again. Called
+	 * when the AnimationGroup turns them off.
+	 * 
+	 * @throws JMException
+	 *             if they could not be unregistered
+	 */
+	synchronized void close() throws JMException {
+		closed = true;
+		unregister();
+	}
+
+	/**
+	 * @return Times each update took
+	 */
+	public LatencyHistogram getUpdateLatency() {
+		return updateLatency;
+	}
+
+	/**
+	 * @return Times each draw took
+	 */
+	public LatencyHistogram getDrawLatency() {
+		return drawLatency;
+	}
+
+	/**
+	 * @return Times each load from an AnimationLibrary took
+	 */
+	public LatencyHistogram getLoadLatency() {
+		return loadLatency;
+	}
+
+	@Override
+	public int getLiveCount() {
+		return group.size();
+	}
+
+	@Override
+	public Map<String, Integer> getLiveCounts() {
+		return group.liveCounts();
+	}
+
+	@Override
+	public long getSpawnCount() {
+		return spawns.get();
+	}
+
+	@Override
+	public long getExpireCount() {
+		return expires.get();
+	}
+
+	@Override
+	public long getKillCount() {
+		return kills.get();
+	}
+
+	@Override
+	public double getSpawnRate() {
+		return spawnRate;
+	}
+
+	@Override
+	public double getExpireRate() {
+		return expireRate;
+	}
+
+	@Override
+	public long getUpdateCount() {
+		return updateLatency.getCount();
+	}
+
+	@Override
+	public double getUpdateMeanNanos() {
+		return updateLatency.getMeanNanos();
+	}
+
+	@Override
+	public long getUpdate99thPercentileNanos() {
+		return updateLatency.getPercentileNanos(0.99);
+	}
+
+	@Override
+	public long getUpdateMaxNanos() {
+		return updateLatency.getMaxNanos();
+	}
+
+	@Override
+	public long[] getUpdateHistogram() {
+		return updateLatency.getBuckets();
+	}
+
+	@Override
+	public long getDrawCount() {
+		return drawLatency.getCount();
+	}
+
+	@Override
+	public double getDrawMeanNanos() {
+		return drawLatency.getMeanNanos();
+	}
+
+	@Override
+	public long getDraw99thPercentileNanos() {
+		return drawLatency.getPercentileNanos(0.99);
+	}
+
+	@Override
+	public long getDrawMaxNanos() {
+		return drawLatency.getMaxNanos();
+	}
+
+	@Override
+	public long[] getDrawHistogram() {
+		return drawLatency.getBuckets();
+	}
+
+	@Override
+	public long getUnrotatedDrawCount() {
+		return unrotatedDraws.get();
+	}
+
+	@Override
+	public long getRotatedDrawCount() {
+		return rotatedDraws.get();
+	}
+
+	@Override
+	public long getLoadCount() {
+		return loadLatency.getCount();
+	}
+
+	@Override
+	public long getLoadMaxNanos() {
+		return loadLatency.getMaxNanos();
+	}
+
+	@Override
+	public void reset() {
+		spawns.set(0);
+		expires.set(0);
+		kills.set(0);
+		unrotatedDraws.set(0);
+		rotatedDraws.set(0);
+		updateLatency.reset();
+		drawLatency.reset();
+		loadLatency.reset();
+		spawnRate = 0;
+		expireRate = 0;
+		windowStart = 0;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.util.Map;
+
+/**
+ * AnimationMetricsMXBean is what JMX clients such as JConsole see of an
+ * AnimationGroup's {@link AnimationMetrics} once it is registered with
+ * {@link AnimationMetrics#register(String)}. Times are in nanoseconds, rates
+ * are per second.
+ * 
+ * @author Brian Jensen
+ */
+public interface AnimationMetricsMXBean {
+
+	/**
+	 * @return Number of Animations displaying
+	 */
+	int getLiveCount();
+
+	/**
+	 * @return Number of Animations displaying for each usable Animation name
+	 *         with any displaying
+	 */
+	Map<String, Integer> getLiveCounts();
+
+	/**
+	 * @return Number of Animations added
+	 */
+	long getSpawnCount();
+
+	/**
+	 * @return Number of Animations removed by update because they finished
+	 *         playing
+	 */
+	long getExpireCount();
+
+	/**
+	 * @return Number of Animations removed before they finished playing
+	 */
+	long getKillCount();
+
+	/**
+	 * @return Animations added per second over the last second of updates
+	 */
+	double getSpawnRate();
+
+	/**
+	 * @return Animations finished per second over the last second of updates
+	 */
+	double getExpireRate();
+
+	/**
+	 * @return Number of updates
+	 */
+	long getUpdateCount();
+
+	/**
+	 * @return Average nanoseconds an update took
+	 */
+	double getUpdateMeanNanos();
+
+	/**
+	 * @return Nanoseconds 99 percent of updates took less than
+	 */
+	long getUpdate99thPercentileNanos();
+
+	/**
+	 * @return Longest update in nanoseconds
+	 */
+	long getUpdateMaxNanos();
+
+	/**
+	 * @return Number of updates in each {@link LatencyHistogram} bucket
+	 */
+	long[] getUpdateHistogram();
+
+	/**
+	 * @return Number of draws
+	 */
+	long getDrawCount();
+
+	/**
+	 * @return Average nanoseconds a draw took
+	 */
+	double getDrawMeanNanos();
+
+	/**
+	 * @return Nanoseconds 99 percent of draws took less than
+	 */
+	long getDraw99thPercentileNanos();
+
+	/**
+	 * @return Longest draw in nanoseconds
+	 */
+	long getDrawMaxNanos();
+
+	/**
+	 * @return Number of draws in each {@link LatencyHistogram} bucket
+	 */
+	long[] getDrawHistogram();
+
+	/**
+	 * @return Number of Animations drawn unrotated
+	 */
+	long getUnrotatedDrawCount();
+
+	/**
+	 * @return Number of Animations drawn rotated
+	 */
+	long getRotatedDrawCount();
+
+	/**
+	 * @return Number of usable Animations loaded from an AnimationLibrary
+	 *         while adding
+	 */
+	long getLoadCount();
+
+	/**
+	 * @return Longest load from an AnimationLibrary in nanoseconds
+	 */
+	long getLoadMaxNanos();
+
+	/**
+	 * Sets every count and time back to 0
+	 */
+	void reset();
+}
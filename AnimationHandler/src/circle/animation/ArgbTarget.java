@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * ArgbTarget draws frames straight into an int[] of non-premultiplied ARGB
+ * pixels, the layout of a TYPE_INT_ARGB BufferedImage, without going through
+ * Java2D. Frames are read through their {@link FrameView} and blended with
+ * SRC_OVER. Frames outside the clip are skipped before any pixel is touched.
+ * Unrotated frames are copied row by row with integer offsets, rotated frames
+ * are sampled nearest neighbor like Graphics2D does by default.
+ * <p>
+ * An ArgbTarget is not safe to draw into from more than one thread at once.
+ * 
+ * @author Brian Jensen
+ */
+public class ArgbTarget implements RenderTarget {
+	// ARGB pixels being drawn into
+	public final int[] pixels;
+	// Index in pixels of the top left pixel
+	public final int offset;
+	// Number of pixels from one row to the next
+	public final int stride;
+	// Width and Height of the area being drawn into
+	public final int width;
+	public final int height;
+	// Area drawn into, right and bottom are exclusive
+	private int clipLeft, clipTop, clipRight, clipBottom;
+
+	/**
+	 * Creates a new ArgbTarget with its own pixels, all fully transparent
+	 * 
+	 * @param width
+	 *            Width in pixels
+	 * @param height
+	 *            Height in pixels
+	 */
+	public ArgbTarget(int width, int height) {
+		this(new int[width * height], 0, width, width, height);
+	}
+
+	/**
+	 * Creates a new ArgbTarget drawing into the pixels of a BufferedImage.
+	 * Java2D can no longer keep a copy of the image in video memory once its
+	 * pixels have been taken.
+	 * 
+	 * @param image
+	 *            TYPE_INT_ARGB image to draw into
+	 * @throws IllegalArgumentException
+	 *             If the image is not TYPE_INT_ARGB
+	 */
+	public ArgbTarget(BufferedImage image) {
+		this(image.getRaster(), check(image));
+	}
+
+	/**
+	 * Creates a new ArgbTarget drawing into an array of pixels
+	 * 
+	 * @param pixels
+	 *            ARGB pixels to draw into
+	 * @param offset
+	 *            Index in pixels of the top left pixel
+	 * @param stride
+	 *            Number of pixels from one row to the next
+	 * @param width
+	 *            Width in pixels
+	 * @param height
+	 *            Height in pixels
+	 */
+	public ArgbTarget(int[] pixels, int offset, int stride, int width, int height) {
+		this.pixels = pixels;
+		this.offset = offset;
+		this.stride = stride;
+		this.width = width;
+		this.height = height;
+		setClip(0, 0, width, height);
+	}
+
+	/**
+	 * Creates a new ArgbTarget drawing into the pixels of a raster
+	 * 
+	 * @param raster
+	 *            Raster of a TYPE_INT_ARGB image
+	 * @param data
+	 *            DataBufferInt of the raster
+	 */
+	private ArgbTarget(WritableRaster raster, DataBufferInt data) {
+		this(data.getData(), data.getOffset() - raster.getSampleModelTranslateY() * scanline(raster)
+				- raster.getSampleModelTranslateX(), scanline(raster), raster.getWidth(), raster.getHeight());
+	}
+
+	/**
+	 * Gets the number of pixels from one row of a raster to the next
+	 * 
+	 * @param raster
+	 *            Raster of a TYPE_INT_ARGB image
+	 * @return Scanline stride of the raster
+	 */
+	private static int scanline(WritableRaster raster) {
+		return ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+	}
+
+	/**
+	 * Checks an image can be drawn into
+	 * 
+	 * @param image
+	 *            Image to check
+	 * @return DataBufferInt holding the pixels of the image
+	 */
+	private static DataBufferInt check(BufferedImage image) {
+		if (image.getType() != BufferedImage.TYPE_INT_ARGB)
+			throw new IllegalArgumentException("ArgbTarget needs a TYPE_INT_ARGB image");
+		return (DataBufferInt) image.getRaster().getDataBuffer();
+	}
+
+	/**
+	 * Sets the area drawn into. Nothing is drawn outside of it.
+	 * 
+	 * @param x
+	 *            x position of the area
+	 * @param y
+	 *            y position of the area
+	 * @param w
+	 *            Width of the area
+	 * @param h
+	 *            Height of the area
+	 */
+	public void setClip(int x, int y, int w, int h) {
+		clipLeft = Math.max(x, 0);
+		clipTop = Math.max(y, 0);
+		clipRight = Math.min(x + w, width);
+		clipBottom = Math.min(y + h, height);
+	}
+
+	/**
+	 * Sets every pixel to one color, ignoring the clip
+	 * 
+	 * @param argb
+	 *            Color in ARGB
+	 */
+	public void clear(int argb) {
+		if (offset == 0 && stride == width) {
+			Arrays.fill(pixels, 0, width * height, argb);
+			return;
+		}
+		for (int y = 0, row = offset; y < height; y++, row += stride)
+			Arrays.fill(pixels, row, row + width, argb);
+	}
+
+	@Override
+	public void drawFrame(Animation animation, int frame, int x, int y) {
+		FrameView v = animation.getTrimmedFrameView(frame);
+		if (v == null)
+			return;
+		int left = x + v.x;
+		int top = y + v.y;
+		int x0 = Math.max(left, clipLeft);
+		int y0 = Math.max(top, clipTop);
+		int x1 = Math.min(left + v.width, clipRight);
+		int y1 = Math.min(top + v.height, clipBottom);
+		if (x0 >= x1 || y0 >= y1)
+			return;
+		int[] src = v.pixels;
+		int[] dst = pixels;
+		int w = x1 - x0;
+		int s = v.offset + (y0 - top) * v.stride + (x0 - left);
+		int d = offset + y0 * stride + x0;
+		for (int row = y0; row < y1; row++, s += v.stride, d += stride)
+			for (int si = s, di = d, end = s + w; si < end; si++, di++) {
+				int p = src[si];
+				if (p >>> 24 == 255)
+					dst[di] = p;
+				else if (p >>> 24 != 0)
+					dst[di] = blend(p, dst[di]);
+			}
+	}
+
+	@Override
+	public void drawFrame(Animation animation, int frame, int x, int y, double sin, double cos) {
+		FrameView v = animation.getTrimmedFrameView(frame);
+		if (v == null)
+			return;
+		int halfWidth = animation.frameSize.width / 2;
+		int halfHeight = animation.frameSize.height / 2;
+		double cx = x + halfWidth;
+		double cy = y + halfHeight;
+		// Bounds of the rotated trimmed frame
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (int c = 0; c < 4; c++) {
+			double px = (c & 1) == 0 ? v.x - halfWidth : v.x + v.width - halfWidth;
+			double py = (c & 2) == 0 ? v.y - halfHeight : v.y + v.height - halfHeight;
+			double dx = cx + cos * px - sin * py;
+			double dy = cy + sin * px + cos * py;
+			minX = Math.min(minX, dx);
+			maxX = Math.max(maxX, dx);
+			minY = Math.min(minY, dy);
+			maxY = Math.max(maxY, dy);
+		}
+		int x0 = Math.max((int) Math.floor(minX), clipLeft);
+		int y0 = Math.max((int) Math.floor(minY), clipTop);
+		int x1 = Math.min((int) Math.ceil(maxX), clipRight);
+		int y1 = Math.min((int) Math.ceil(maxY), clipBottom);
+		if (x0 >= x1 || y0 >= y1)
+			return;
+		int[] src = v.pixels;
+		int[] dst = pixels;
+		// Step through the frame in 16.16 fixed point, mapping the center of
+		// each pixel drawn back to the pixel of the frame it lands on
+		int stepX = (int) Math.round(cos * 65536);
+		int stepY = (int) Math.round(-sin * 65536);
+		for (int row = y0; row < y1; row++) {
+			double ux = x0 + 0.5 - cx;
+			double uy = row + 0.5 - cy;
+			int fx = (int) Math.floor((halfWidth - v.x + cos * ux + sin * uy) * 65536);
+			int fy = (int) Math.floor((halfHeight - v.y - sin * ux + cos * uy) * 65536);
+			int d = offset + row * stride + x0;
+			for (int col = x0; col < x1; col++, d++, fx += stepX, fy += stepY) {
+				int sx = fx >> 16;
+				int sy = fy >> 16;
+				if (sx < 0 || sy < 0 || sx >= v.width || sy >= v.height)
+					continue;
+				int p = src[v.offset + sy * v.stride + sx];
+				int a = p >>> 24;
+				if (a == 255)
+					dst[d] = p;
+				else if (a != 0)
+					dst[d] = blend(p, dst[d]);
+			}
+		}
+	}
+
+	/**
+	 * Blends a pixel that is neither fully transparent nor fully opaque over
+	 * another with SRC_OVER
+	 * 
+	 * @param s
+	 *            Pixel being drawn in ARGB
+	 * @param d
+	 *            Pixel being drawn over in ARGB
+	 * @return The blended pixel in ARGB
+	 */
+	private static int blend(int s, int d) {
+		int sa = s >>> 24;
+		int da = d >>> 24;
+		if (da == 0)
+			return s;
+		int ia = 255 - sa;
+		if (da == 255) {
+			int r = ((s >> 16) & 0xFF) * sa + ((d >> 16) & 0xFF) * ia;
+			int g = ((s >> 8) & 0xFF) * sa + ((d >> 8) & 0xFF) * ia;
+			int b = (s & 0xFF) * sa + (d & 0xFF) * ia;
+			return 0xFF000000 | (div255(r) << 16) | (div255(g) << 8) | div255(b);
+		}
+		// Both pixels are partly transparent, blend then un-premultiply
+		int dw = div255(da * ia);
+		int oa = sa + dw;
+		int r = (((s >> 16) & 0xFF) * sa + ((d >> 16) & 0xFF) * dw) / oa;
+		int g = (((s >> 8) & 0xFF) * sa + ((d >> 8) & 0xFF) * dw) / oa;
+		int b = ((s & 0xFF) * sa + (d & 0xFF) * dw) / oa;
+		return (oa << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Divides by 255 with rounding for values from 0 to 255 * 255
+	 * 
+	 * @param v
+	 *            Value to divide
+	 * @return v / 255 rounded
+	 */
+	private static int div255(int v) {
+		v += 128;
+		return (v + (v >> 8)) >> 8;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.awt.Rectangle;
+
+import javax.swing.JComponent;
+
+/**
+ * DirtyRepainter asks a JComponent to repaint only the areas an
+ * AnimationGroup changed instead of the whole component. Turn on tracking
+ * with {@link AnimationGroup#setDirtyTracking(int)}, call {@link #repaint()}
+ * after each update and draw with
+ * {@link AnimationGroup#draw(java.awt.Graphics2D, Rectangle)} using the clip
+ * bounds so only the Animations in the repainted area are drawn.
+ * 
+ * @author Brian Jensen
+ */
+public class DirtyRepainter {
+	private final AnimationGroup group;
+	private final JComponent component;
+	// Where the position 0, 0 of the AnimationGroup is in the component
+	private int offsetX, offsetY;
+
+	/**
+	 * Creates a new DirtyRepainter
+	 * 
+	 * @param group
+	 *            AnimationGroup to take the changed areas from
+	 * @param component
+	 *            JComponent the AnimationGroup is drawn in
+	 */
+	public DirtyRepainter(AnimationGroup group, JComponent component) {
+		this.group = group;
+		this.component = component;
+	}
+
+	/**
+	 * Sets where the AnimationGroup is drawn in the component, for a
+	 * Graphics2D that is translated before drawing
+	 * 
+	 * @param x
+	 *            x in the component of position 0 of the AnimationGroup
+	 * @param y
+	 *            y in the component of position 0 of the AnimationGroup
+	 */
+	public void setOffset(int x, int y) {
+		this.offsetX = x;
+		this.offsetY = y;
+	}
+
+	/**
+	 * Takes the areas changed since the last call and asks the component to
+	 * repaint each of them. Can be called from any thread. Swing may merge
+	 * the areas of one component before painting them.
+	 * 
+	 * @return Number of areas repainted, 0 if nothing changed
+	 */
+	public int repaint() {
+		Rectangle[] regions = this.group.takeDirtyRegions();
+		for (Rectangle r : regions)
+			this.component.repaint(r.x + this.offsetX, r.y + this.offsetY, r.width, r.height);
+		return regions.length;
+	}
+}
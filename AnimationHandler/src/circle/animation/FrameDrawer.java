@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import circle.animation.internal.RadixSorter;
+import circle.animation.internal.RotationTable;
+
+/**
+ * FrameDrawer draws the frames of displaying Animations for one call to
+ * AnimationGroup.draw, either through a Graphics2D or onto a RenderTarget.
+ * Each drawing thread reuses its own FrameDrawer so drawing creates no
+ * objects.
+ * 
+ * @author Brian Jensen
+ */
+class FrameDrawer {
+	// FrameDrawer reused by each drawing thread
+	private static final ThreadLocal<FrameDrawer> DRAWER = new ThreadLocal<FrameDrawer>() {
+		@Override
+		protected FrameDrawer initialValue() {
+			return new FrameDrawer();
+		}
+	};
+	// Orders slots for batched drawing
+	private final RadixSorter sorter = new RadixSorter();
+	// Slots found in a viewport while drawing a Snapshot
+	private int[] slots = new int[64];
+	// Draws frames through the Graphics2D given to begin
+	private final Graphics2DTarget graphics = new Graphics2DTarget(null);
+	private Graphics2D g2;
+	// Target frames are drawn onto
+	private RenderTarget target;
+	// usable Animations by template index
+	private Animation[] templates;
+	// Rounds rotations to steps of a full turn, null for exact
+	private RotationTable table;
+	// Rotated frames already drawn, null to rotate while drawing
+	private RotationCache cache;
+	// Packed frames to draw unrotated Animations from, can be null
+	private TextureAtlas atlas;
+
+	/**
+	 * Gets the FrameDrawer of this thread ready to draw
+	 * 
+	 * @param g2
+	 *            Graphics2D being used to draw Images to the screen, null to
+	 *            draw onto target
+	 * @param target
+	 *            RenderTarget to draw onto when g2 is null
+	 * @param templates
+	 *            usable Animations by template index
+	 * @param table
+	 *            RotationTable to round rotations with, null for exact
+	 * @param cache
+	 *            RotationCache to draw rotated frames from, can be null
+	 * @param atlas
+	 *            TextureAtlas to draw unrotated frames from, can be null
+	 * @return the FrameDrawer of this thread
+	 */
+	static FrameDrawer begin(Graphics2D g2, RenderTarget target, Animation[] templates, RotationTable table,
+			RotationCache cache, TextureAtlas atlas) {
+		FrameDrawer drawer = DRAWER.get();
+		drawer.g2 = g2;
+		drawer.templates = templates;
+		drawer.table = table;
+		if (g2 != null) {
+			drawer.graphics.setGraphics(g2);
+			drawer.target = drawer.graphics;
+			drawer.cache = cache;
+			drawer.atlas = atlas;
+		} else {
+			// The atlas and rotated frame cache only work with Graphics2D
+			drawer.target = target;
+			drawer.cache = null;
+			drawer.atlas = null;
+		}
+		return drawer;
+	}
+
+	/**
+	 * Gets this thread's array for slots found in a viewport
+	 * 
+	 * @param capacity
+	 *            Most slots that can be found
+	 * @return Array with room for capacity slots
+	 */
+	int[] slots(int capacity) {
+		if (capacity > slots.length)
+			slots = new int[Math.max(capacity, slots.length * 2)];
+		return slots;
+	}
+
+	/**
+	 * Orders slots by layer, then template, then frame so frames from the
+	 * same sheet are drawn one after another
+	 * 
+	 * @param slots
+	 *            Slots to sort, null for slots 0 to n - 1
+	 * @param n
+	 *            Number of slots to sort
+	 * @param layer
+	 *            Layer of each slot
+	 * @param template
+	 *            Template index of each slot
+	 * @param frame
+	 *            Frame of each slot
+	 * @return Array holding the sorted slots in its first n entries
+	 */
+	int[] sort(int[] slots, int n, int[] layer, int[] template, int[] frame) {
+		return sorter.sort(slots, n, layer, template, frame);
+	}
+
+	/**
+	 * Lets go of everything given to begin once drawing is done
+	 */
+	void end() {
+		this.g2 = null;
+		this.graphics.setGraphics(null);
+		this.target = null;
+		this.templates = null;
+		this.cache = null;
+		this.atlas = null;
+	}
+
+	/**
+	 * Draws one frame of an Animation
+	 * 
+	 * @param template
+	 *            template index of the Animation
+	 * @param frame
+	 *            frame of the Animation to draw
+	 * @param x
+	 *            x position of the Animation
+	 * @param y
+	 *            y position of the Animation
+	 * @param rotate
+	 *            true to draw the frame rotated
+	 * @param rotation
+	 *            rotation of the Animation in degrees
+	 */
+	void draw(int template, int frame, int x, int y, boolean rotate, double rotation) {
+		if (!rotate) {
+			if (atlas != null && atlas.draw(g2, template, templates[template], frame, x, y))
+				return;
+			target.drawFrame(templates[template], frame, x, y);
+			return;
+		}
+		if (templates[template].animation.trimmed[frame] == null)
+			return;
+		if (cache != null) {
+			BufferedImage temp = templates[template].getFrameImage(frame);
+			RotationCache.Rotated rotated = cache.get(template, frame, temp, rotation);
+			g2.drawImage(rotated.image, x + rotated.offsetX, y + rotated.offsetY, null);
+		} else {
+			double sin, cos;
+			if (table != null) {
+				int step = table.step(rotation);
+				sin = table.sin(step);
+				cos = table.cos(step);
+			} else if (rotation % 90 == 0) {
+				// Keep quarter turns exact so Java2D draws them without
+				// resampling, like RotationTable does
+				int quarter = (int) (rotation / 90 % 4);
+				if (quarter < 0)
+					quarter += 4;
+				sin = quarter == 1 ? 1 : quarter == 3 ? -1 : 0;
+				cos = quarter == 0 ? 1 : quarter == 2 ? -1 : 0;
+			} else {
+				double theta = Math.toRadians(rotation);
+				sin = Math.sin(theta);
+				cos = Math.cos(theta);
+			}
+			target.drawFrame(templates[template], frame, x, y, sin, cos);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+/**
+ * FrameView is a view of one frame straight over the pixels of the sheet the
+ * frame was split from. No pixels are copied, so reading a pixel is a single
+ * array read. The pixel at (px, py) of the view is
+ * pixels[offset + py * stride + px] in non-premultiplied ARGB.
+ * <p>
+ * A view can cover the whole frame or only the part of it that is not fully
+ * transparent, in which case x and y give where the view starts inside the
+ * frame. The pixels are shared with the frame images, so writing to them
+ * changes the Animation.
+ * 
+ * @author Brian Jensen
+ */
+public class FrameView {
+	// ARGB pixels of the whole sheet
+	public final int[] pixels;
+	// Index in pixels of the top left pixel of the view
+	public final int offset;
+	// Number of pixels from one row of the view to the next
+	public final int stride;
+	// Width and Height of the view
+	public final int width;
+	public final int height;
+	// Position of the top left of the view inside the frame
+	public final int x;
+	public final int y;
+
+	/**
+	 * Creates a new FrameView
+	 * 
+	 * @param pixels
+	 *            ARGB pixels of the whole sheet
+	 * @param offset
+	 *            Index in pixels of the top left pixel of the view
+	 * @param stride
+	 *            Number of pixels from one row of the view to the next
+	 * @param x
+	 *            x position of the view inside the frame
+	 * @param y
+	 *            y position of the view inside the frame
+	 * @param width
+	 *            Width of the view
+	 * @param height
+	 *            Height of the view
+	 */
+	FrameView(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+		this.pixels = pixels;
+		this.offset = offset;
+		this.stride = stride;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Gets one pixel of the view
+	 * 
+	 * @param px
+	 *            x position in the view
+	 * @param py
+	 *            y position in the view
+	 * @return The pixel in non-premultiplied ARGB
+	 */
+	public int getARGB(int px, int py) {
+		return pixels[offset + py * stride + px];
+	}
+
+	/**
+	 * Checks if a pixel of the view is not fully transparent. Useful for
+	 * pixel exact hit testing.
+	 * 
+	 * @param px
+	 *            x position in the view
+	 * @param py
+	 *            y position in the view
+	 * @return true if the pixel is inside the view and not fully transparent
+	 */
+	public boolean isOpaque(int px, int py) {
+		return px >= 0 && py >= 0 && px < width && py < height && (pixels[offset + py * stride + px] >>> 24) != 0;
+	}
+}
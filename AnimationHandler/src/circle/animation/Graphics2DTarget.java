@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import circle.animation.internal.FrameBuffer;
+
+/**
+ * Graphics2DTarget draws frames through a Graphics2D. Drawing an
+ * AnimationGroup onto it looks the same as
+ * {@link AnimationGroup#draw(Graphics2D)} without a TextureAtlas or
+ * RotationCache.
+ * 
+ * @author Brian Jensen
+ */
+public class Graphics2DTarget implements RenderTarget {
+	// Transform reused for drawing rotated frames
+	private final AffineTransform at = new AffineTransform();
+	private Graphics2D g2;
+
+	/**
+	 * Creates a new Graphics2DTarget
+	 * 
+	 * @param g2
+	 *            Graphics2D to draw with
+	 */
+	public Graphics2DTarget(Graphics2D g2) {
+		this.g2 = g2;
+	}
+
+	/**
+	 * Sets the Graphics2D to draw with, so one Graphics2DTarget can be reused
+	 * for each new Graphics2D
+	 * 
+	 * @param g2
+	 *            Graphics2D to draw with
+	 */
+	public void setGraphics(Graphics2D g2) {
+		this.g2 = g2;
+	}
+
+	/**
+	 * @return Graphics2D being drawn with
+	 */
+	public Graphics2D getGraphics() {
+		return this.g2;
+	}
+
+	@Override
+	public void drawFrame(Animation animation, int frame, int x, int y) {
+		// Only draw the part of the frame that is not transparent
+		FrameBuffer fb = animation.animation;
+		BufferedImage trimmed = fb.trimmed[frame];
+		if (trimmed != null)
+			g2.drawImage(trimmed, x + fb.trimX[frame], y + fb.trimY[frame], null);
+	}
+
+	@Override
+	public void drawFrame(Animation animation, int frame, int x, int y, double sin, double cos) {
+		BufferedImage temp = animation.getFrameImage(frame);
+		int halfWidth = temp.getWidth() / 2;
+		int halfHeight = temp.getHeight() / 2;
+		// Rotate about the center: translate to center, rotate, translate back
+		at.setTransform(cos, sin, -sin, cos, x + halfWidth - halfWidth * cos + halfHeight * sin,
+				y + halfHeight - halfWidth * sin - halfHeight * cos);
+		g2.drawImage(temp, at, null);
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram counts how long something took in buckets that double in
+ * size, so any number of times can be recorded in a fixed amount of memory
+ * without creating objects. Bucket b counts times of at least 2^(b-1) and
+ * less than 2^b nanoseconds, bucket 0 counts times of 0. Times can be
+ * recorded and read from any thread.
+ * 
+ * @author Brian Jensen
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of buckets, enough for any long number of nanoseconds
+	 */
+	public static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Counts one time
+	 * 
+	 * @param nanos
+	 *            Nanoseconds taken, negative times count as 0
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		buckets.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long m;
+		while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos))
+			;
+	}
+
+	/**
+	 * Gets the bucket a time is counted in
+	 * 
+	 * @param nanos
+	 *            Nanoseconds taken, at least 0
+	 * @return Index of the bucket
+	 */
+	public static int bucket(long nanos) {
+		return Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1);
+	}
+
+	/**
+	 * @return Number of times recorded
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return Nanoseconds of every time recorded added together
+	 */
+	public long getTotalNanos() {
+		return total.get();
+	}
+
+	/**
+	 * @return Average nanoseconds taken, 0 if nothing was recorded
+	 */
+	public double getMeanNanos() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) total.get() / n;
+	}
+
+	/**
+	 * @return Longest time recorded in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	/**
+	 * Gets a time that a fraction of the recorded times were shorter than. The
+	 * time is the top of the bucket it falls in, so it can be up to twice the
+	 * real time, but never more than the longest time recorded.
+	 * 
+	 * @param fraction
+	 *            0 - 1, 0.99 for the 99th percentile
+	 * @return Nanoseconds, 0 if nothing was recorded
+	 */
+	public long getPercentileNanos(double fraction) {
+		long[] counts = getBuckets();
+		long n = 0;
+		for (long c : counts)
+			n += c;
+		if (n == 0)
+			return 0;
+		long rank = (long) Math.ceil(Math.max(Math.min(fraction, 1), 0) * n);
+		long seen = 0;
+		int b = 0;
+		for (; b < BUCKETS - 1; b++) {
+			seen += counts[b];
+			if (seen >= rank && seen > 0)
+				break;
+		}
+		long top = b == 0 ? 0 : b >= 63 ? Long.MAX_VALUE : (1L << b) - 1;
+		return Math.min(top, max.get());
+	}
+
+	/**
+	 * @return Copy of the count in each bucket
+	 */
+	public long[] getBuckets() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] = buckets.get(i);
+		return counts;
+	}
+
+	/**
+	 * Forgets every time recorded. Times recorded while resetting may be
+	 * partly kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			buckets.set(i, 0);
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+/**
+ * MetricsListener is told how long each update and draw of an AnimationGroup
+ * took, and each time a usable Animation had to be loaded from an
+ * AnimationLibrary while adding it. Set with
+ * {@link AnimationMetrics#setListener(MetricsListener)}.
+ * 
+ * @author Brian Jensen
+ */
+public interface MetricsListener {
+
+	/**
+	 * Called after each update. This is called while the AnimationGroup is
+	 * locked so it should return quickly.
+	 * 
+	 * @param nanos
+	 *            Nanoseconds the update took
+	 * @param size
+	 *            Number of Animations displaying after the update
+	 * @param expired
+	 *            Number of Animations that finished playing and were removed
+	 */
+	void updated(long nanos, int size, int expired);
+
+	/**
+	 * Called after each draw, on the thread that drew
+	 * 
+	 * @param nanos
+	 *            Nanoseconds the draw took
+	 * @param unrotated
+	 *            Number of Animations drawn unrotated
+	 * @param rotated
+	 *            Number of Animations drawn rotated
+	 */
+	void drawn(long nanos, int unrotated, int rotated);
+
+	/**
+	 * Called after a usable Animation was loaded from an AnimationLibrary, on
+	 * the thread that added it
+	 * 
+	 * @param name
+	 *            Name of the Animation loaded
+	 * @param nanos
+	 *            Nanoseconds loading took
+	 */
+	void loaded(String name, long nanos);
+}
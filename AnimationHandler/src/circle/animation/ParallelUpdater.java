@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ParallelUpdater splits the update of a large AnimationGroup into chunks of
+ * slots that are advanced at the same time on an Executor. The thread calling
+ * update and the workers on the Executor claim chunks until none are left, and
+ * the calling thread then waits for chunks still being advanced. A chunk
+ * nobody else has started is done by the calling thread, so updating from a
+ * thread of the Executor itself, or with every thread of it busy, does not
+ * wait forever. It only updates on fewer threads.
+ * 
+ * @author Brian Jensen
+ */
+class ParallelUpdater {
+	// Runs the workers
+	private final Executor executor;
+	// Number of chunks to split the slots into
+	final int chunks;
+	// Fewest Animations before updating in parallel
+	final int threshold;
+	// Set for each slot whose Animation finished during the update
+	boolean[] expired = new boolean[0];
+	// Handles of the Animations removed during the update
+	long[] finished = new long[0];
+	// Workers handed to the Executor that have not started yet
+	private final AtomicInteger queued = new AtomicInteger();
+	// Update number in the high 32 bits, next chunk to claim in the low 32
+	private final AtomicLong cursor = new AtomicLong();
+	// Chunks of the current update that are not done yet
+	private final AtomicInteger pending = new AtomicInteger();
+	// Thread waiting for the chunks of the current update
+	private volatile Thread waiter;
+	// First error thrown while advancing a chunk of the current update
+	private volatile Throwable error;
+	// Current update. Set before cursor moves on to it
+	private int updates;
+	private AnimationGroup group;
+	private int size;
+	private int chunkSize;
+	private int tasks;
+	private long nanosDelta;
+	// Claims chunks until none are left. The same worker is handed to the
+	// Executor every update so nothing is created per update
+	private final Runnable worker = new Runnable() {
+		@Override
+		public void run() {
+			queued.decrementAndGet();
+			work();
+		}
+	};
+
+	/**
+	 * Creates a new ParallelUpdater
+	 * 
+	 * @param executor
+	 *            Executor to run chunks on
+	 * @param chunks
+	 *            Number of chunks to split the slots into
+	 * @param threshold
+	 *            Fewest Animations before updating in parallel
+	 */
+	ParallelUpdater(Executor executor, int chunks, int threshold) {
+		this.executor = executor;
+		this.chunks = Math.max(chunks, 1);
+		this.threshold = Math.max(threshold, 1);
+	}
+
+	/**
+	 * Makes sure the scratch arrays have room for every slot
+	 * 
+	 * @param capacity
+	 *            Number of slots in the AnimationGroup
+	 */
+	void ensureCapacity(int capacity) {
+		if (expired.length < capacity) {
+			expired = new boolean[capacity];
+			finished = new long[capacity];
+		}
+	}
+
+	/**
+	 * Advances every Animation in slots 0 to size - 1 of the group, one chunk
+	 * at a time on this thread and the Executor, and waits for all chunks to
+	 * be done
+	 * 
+	 * @param group
+	 *            AnimationGroup being updated
+	 * @param size
+	 *            Number of Animations displaying
+	 * @param nanosDelta
+	 *            Nanoseconds to play, or AnimationGroup.TICK for one frame
+	 */
+	void advance(AnimationGroup group, int size, long nanosDelta) {
+		int chunkSize = (size + chunks - 1) / chunks;
+		this.group = group;
+		this.size = size;
+		this.chunkSize = chunkSize;
+		this.tasks = (size + chunkSize - 1) / chunkSize;
+		this.nanosDelta = nanosDelta;
+		this.error = null;
+		this.waiter = Thread.currentThread();
+		pending.set(tasks);
+		cursor.set((long) ++updates << 32);
+		// Workers still queued from earlier updates work on this one instead
+		for (int t = queued.get() + 1; t < tasks; t++) {
+			queued.incrementAndGet();
+			try {
+				executor.execute(worker);
+			} catch (RejectedExecutionException e) {
+				// Executor is shut down or full so the chunks are done here
+				queued.decrementAndGet();
+				break;
+			}
+		}
+		work();
+		boolean interrupted = false;
+		while (pending.get() != 0) {
+			LockSupport.park(this);
+			if (Thread.interrupted())
+				interrupted = true;
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		Throwable e = this.error;
+		if (e != null)
+			throw new RuntimeException("Parallel update failed", e);
+	}
+
+	/**
+	 * Claims and advances chunks of the current update until none are left
+	 */
+	private void work() {
+		while (true) {
+			long c = cursor.get();
+			int chunk = (int) c;
+			// A worker started after its update was done finds nothing left
+			if (chunk >= tasks)
+				return;
+			AnimationGroup group = this.group;
+			int size = this.size;
+			int chunkSize = this.chunkSize;
+			long nanosDelta = this.nanosDelta;
+			boolean[] expired = this.expired;
+			// Fails if another thread claimed the chunk or a new update began
+			if (!cursor.compareAndSet(c, c + 1))
+				continue;
+			int from = chunk * chunkSize;
+			try {
+				group.advance(from, Math.min(from + chunkSize, size), expired, nanosDelta);
+			} catch (Throwable e) {
+				if (error == null)
+					error = e;
+			} finally {
+				if (pending.decrementAndGet() == 0)
+					LockSupport.unpark(waiter);
+			}
+		}
+	}
+}
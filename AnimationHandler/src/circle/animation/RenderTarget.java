@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+/**
+ * RenderTarget is something frames of displaying Animations can be drawn
+ * onto by {@link AnimationGroup#draw(RenderTarget)}. Graphics2DTarget draws
+ * through a Graphics2D the same way {@link AnimationGroup#draw(Graphics2D)}
+ * does, ArgbTarget draws straight into an int[] of ARGB pixels without
+ * Java2D.
+ * 
+ * @author Brian Jensen
+ */
+public interface RenderTarget {
+
+	/**
+	 * Draws one frame of an Animation unrotated
+	 * 
+	 * @param animation
+	 *            Animation holding the frame
+	 * @param frame
+	 *            frame of the Animation to draw
+	 * @param x
+	 *            x position of the top left of the frame
+	 * @param y
+	 *            y position of the top left of the frame
+	 */
+	void drawFrame(Animation animation, int frame, int x, int y);
+
+	/**
+	 * Draws one frame of an Animation rotated about the center of the frame.
+	 * Only called for frames that are not fully transparent.
+	 * 
+	 * @param animation
+	 *            Animation holding the frame
+	 * @param frame
+	 *            frame of the Animation to draw
+	 * @param x
+	 *            x position of the top left of the frame before rotating
+	 * @param y
+	 *            y position of the top left of the frame before rotating
+	 * @param sin
+	 *            sine of the rotation
+	 * @param cos
+	 *            cosine of the rotation
+	 */
+	void drawFrame(Animation animation, int frame, int x, int y, double sin, double cos);
+}
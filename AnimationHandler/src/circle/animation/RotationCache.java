@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import circle.animation.internal.RotationTable;
+
+/**
+ * RotationCache keeps frames that have already been drawn rotated so rotated
+ * Animations can be drawn as plain images. Rotations are rounded to a number
+ * of steps in a full turn and each frame is rotated the first time it is
+ * drawn at a step. The least recently used frames are dropped once the cache
+ * holds more than its memory budget. Finding a cached frame creates no
+ * objects.
+ * <p>
+ * A RotationCache belongs to the one AnimationGroup it is set on.
+ * 
+ * @author Brian Jensen
+ * @see AnimationGroup#setRotationCache(RotationCache)
+ */
+public class RotationCache {
+	// Rounds rotations to steps of a full turn
+	private final RotationTable table;
+	// Most bytes of rotated frames to keep
+	private final long maxBytes;
+	// Open addressing table of rotated frames by key, null where empty. The
+	// length is a power of two
+	private long[] keys = new long[64];
+	private Rotated[] values = new Rotated[64];
+	private int size;
+	// Ends of the list through every rotated frame in least recently used
+	// order
+	private Rotated oldest;
+	private Rotated newest;
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a new RotationCache
+	 * 
+	 * @param steps
+	 *            Number of steps in a full turn to round rotations to
+	 * @param maxBytes
+	 *            Most bytes of rotated frames to keep
+	 */
+	public RotationCache(int steps, long maxBytes) {
+		this.table = new RotationTable(steps);
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Gets a frame rotated about its center, rotating it if it is not cached
+	 * 
+	 * @param template
+	 *            template index of the Animation
+	 * @param frame
+	 *            frame of the Animation
+	 * @param image
+	 *            Image of the frame
+	 * @param rotation
+	 *            rotation in degrees
+	 * @return the rotated frame
+	 */
+	synchronized Rotated get(int template, int frame, BufferedImage image, double rotation) {
+		int step = table.step(rotation);
+		long key = ((long) template << 42) | ((long) frame << 21) | step;
+		int i = find(key);
+		if (i >= 0) {
+			hits++;
+			Rotated rotated = values[i];
+			unlink(rotated);
+			append(rotated);
+			return rotated;
+		}
+		misses++;
+		Rotated rotated = rotate(image, table.sin(step), table.cos(step));
+		rotated.key = key;
+		values[-i - 1] = rotated;
+		keys[-i - 1] = key;
+		append(rotated);
+		bytes += rotated.bytes();
+		if (++size * 4 > values.length * 3)
+			rehash(values.length * 2);
+		// Keep the frame just rotated even if it is bigger than the budget
+		while (bytes > maxBytes && oldest != rotated) {
+			Rotated evicted = oldest;
+			unlink(evicted);
+			remove(find(evicted.key));
+			bytes -= evicted.bytes();
+			evictions++;
+		}
+		return rotated;
+	}
+
+	/**
+	 * Finds where a key is in the table
+	 * 
+	 * @param key
+	 *            key of a rotated frame
+	 * @return index of the key, or -(index it would go at) - 1 if it is not
+	 *         in the table
+	 */
+	private int find(long key) {
+		int mask = values.length - 1;
+		int i = hash(key) & mask;
+		while (values[i] != null) {
+			if (keys[i] == key)
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -i - 1;
+	}
+
+	/**
+	 * Empties an index of the table, moving back the keys after it that could
+	 * no longer be found
+	 * 
+	 * @param i
+	 *            index to empty
+	 */
+	private void remove(int i) {
+		int mask = values.length - 1;
+		values[i] = null;
+		size--;
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = hash(keys[j]) & mask;
+			// Leave the key if its home is after the empty index and not
+			// after j, going around the end of the table
+			if (i <= j ? i < home && home <= j : i < home || home <= j)
+				continue;
+			keys[i] = keys[j];
+			values[i] = values[j];
+			values[j] = null;
+			i = j;
+		}
+	}
+
+	/**
+	 * Moves every rotated frame into a table of a new length
+	 * 
+	 * @param length
+	 *            new length of the table, a power of two
+	 */
+	private void rehash(int length) {
+		keys = new long[length];
+		values = new Rotated[length];
+		for (Rotated r = oldest; r != null; r = r.next) {
+			int i = -find(r.key) - 1;
+			keys[i] = r.key;
+			values[i] = r;
+		}
+	}
+
+	/**
+	 * Spreads the bits of a key so nearby frames and steps land apart
+	 * 
+	 * @param key
+	 *            key of a rotated frame
+	 * @return hash of the key
+	 */
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Adds a rotated frame to the most recently used end of the list
+	 * 
+	 * @param rotated
+	 *            rotated frame not in the list
+	 */
+	private void append(Rotated rotated) {
+		rotated.previous = newest;
+		rotated.next = null;
+		if (newest != null)
+			newest.next = rotated;
+		else
+			oldest = rotated;
+		newest = rotated;
+	}
+
+	/**
+	 * Takes a rotated frame out of the list
+	 * 
+	 * @param rotated
+	 *            rotated frame in the list
+	 */
+	private void unlink(Rotated rotated) {
+		if (rotated.previous != null)
+			rotated.previous.next = rotated.next;
+		else
+			oldest = rotated.next;
+		if (rotated.next != null)
+			rotated.next.previous = rotated.previous;
+		else
+			newest = rotated.previous;
+		rotated.previous = null;
+		rotated.next = null;
+	}
+
+	/**
+	 * Draws a frame rotated about its center into a new image just big enough
+	 * to hold it
+	 * 
+	 * @param image
+	 *            Image of the frame
+	 * @param sin
+	 *            sine of the rotation
+	 * @param cos
+	 *            cosine of the rotation
+	 * @return the rotated frame
+	 */
+	private Rotated rotate(BufferedImage image, double sin, double cos) {
+		int halfWidth = image.getWidth() / 2;
+		int halfHeight = image.getHeight() / 2;
+		AffineTransform at = new AffineTransform(cos, sin, -sin, cos, halfWidth - halfWidth * cos + halfHeight * sin,
+				halfHeight - halfWidth * sin - halfHeight * cos);
+		Rectangle2D bounds = at.createTransformedShape(new Rectangle2D.Double(0, 0, image.getWidth(), image.getHeight()))
+				.getBounds2D();
+		int offsetX = (int) Math.floor(bounds.getMinX());
+		int offsetY = (int) Math.floor(bounds.getMinY());
+		int width = Math.max((int) Math.ceil(bounds.getMaxX()) - offsetX, 1);
+		int height = Math.max((int) Math.ceil(bounds.getMaxY()) - offsetY, 1);
+		BufferedImage dest = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = dest.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g2.translate(-offsetX, -offsetY);
+		g2.drawImage(image, at, null);
+		g2.dispose();
+		return new Rotated(dest, offsetX, offsetY);
+	}
+
+	/**
+	 * Removes every rotated frame. Counters are kept.
+	 */
+	public synchronized void clear() {
+		keys = new long[64];
+		values = new Rotated[64];
+		size = 0;
+		oldest = null;
+		newest = null;
+		bytes = 0;
+	}
+
+	/**
+	 * @return Number of steps in a full turn rotations are rounded to
+	 */
+	public int getSteps() {
+		return table.getSteps();
+	}
+
+	/**
+	 * @return Number of rotated frames drawn from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return Number of frames that had to be rotated
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return Number of rotated frames dropped to stay within the budget
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return Bytes of rotated frames held
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return Most bytes of rotated frames to keep
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return Number of rotated frames held
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Rotated holds a rotated frame and where to draw it from the position of
+	 * the Animation
+	 */
+	static class Rotated {
+		final BufferedImage image;
+		final int offsetX;
+		final int offsetY;
+		// Key in the table and neighbours in the least recently used list
+		long key;
+		Rotated previous;
+		Rotated next;
+
+		Rotated(BufferedImage image, int offsetX, int offsetY) {
+			this.image = image;
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+		}
+
+		/**
+		 * @return Bytes of pixels in the rotated frame
+		 */
+		long bytes() {
+			return 4L * image.getWidth() * image.getHeight();
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import circle.animation.internal.InstanceStore;
+
+/**
+ * SnapshotBuffer passes copies of an AnimationGroup's displaying Animations
+ * from the thread updating them to the thread drawing them. Three Snapshots
+ * are used so the updating thread always has one to fill, the drawing thread
+ * always has one to draw and the newest finished one waits in between.
+ * Neither thread ever waits on the other.
+ * <p>
+ * Only one thread may publish and only one thread may draw at a time.
+ * 
+ * @author Brian Jensen
+ */
+class SnapshotBuffer {
+	// Set on the waiting index when it holds a Snapshot not yet drawn
+	private static final int FRESH = 4;
+	private final Snapshot[] snapshots = { new Snapshot(), new Snapshot(), new Snapshot() };
+	// Snapshot being filled by the updating thread
+	private int back = 0;
+	// Snapshot waiting to be drawn, with FRESH set if it is newer than front
+	private final AtomicInteger waiting = new AtomicInteger(1);
+	// Snapshot being drawn by the drawing thread
+	private int front = 2;
+
+	/**
+	 * Copies the displaying Animations and makes the copy the newest Snapshot
+	 * 
+	 * @param templates
+	 *            usable Animations by template index
+	 * @param store
+	 *            displaying Animations to copy
+	 */
+	void publish(Animation[] templates, InstanceStore store) {
+		snapshots[back].copy(templates, store);
+		back = waiting.getAndSet(back | FRESH) & ~FRESH;
+	}
+
+	/**
+	 * Gets the newest published Snapshot. It stays unchanged until the next
+	 * call.
+	 * 
+	 * @return newest Snapshot
+	 */
+	Snapshot latest() {
+		if ((waiting.get() & FRESH) != 0)
+			front = waiting.getAndSet(front) & ~FRESH;
+		return snapshots[front];
+	}
+
+	/**
+	 * Snapshot holds a copy of what is needed to draw each displaying
+	 * Animation
+	 */
+	static class Snapshot {
+		// usable Animations by template index
+		Animation[] templates = new Animation[0];
+		int size;
+		int[] template = new int[0];
+		int[] frame = new int[0];
+		int[] x = new int[0];
+		int[] y = new int[0];
+		double[] rotation = new double[0];
+		boolean[] rotate = new boolean[0];
+		int[] layer = new int[0];
+
+		/**
+		 * Copies the displaying Animations, growing the arrays if needed
+		 * 
+		 * @param templates
+		 *            usable Animations by template index
+		 * @param store
+		 *            displaying Animations to copy
+		 */
+		private void copy(Animation[] templates, InstanceStore store) {
+			int n = store.size;
+			if (n > template.length) {
+				int capacity = store.template.length;
+				template = new int[capacity];
+				frame = new int[capacity];
+				x = new int[capacity];
+				y = new int[capacity];
+				rotation = new double[capacity];
+				rotate = new boolean[capacity];
+				layer = new int[capacity];
+			}
+			this.templates = templates;
+			System.arraycopy(store.template, 0, template, 0, n);
+			System.arraycopy(store.frame, 0, frame, 0, n);
+			System.arraycopy(store.x, 0, x, 0, n);
+			System.arraycopy(store.y, 0, y, 0, n);
+			System.arraycopy(store.rotation, 0, rotation, 0, n);
+			System.arraycopy(store.rotate, 0, rotate, 0, n);
+			System.arraycopy(store.layer, 0, layer, 0, n);
+			this.size = n;
+		}
+	}
+}
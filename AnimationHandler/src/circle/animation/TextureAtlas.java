@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import circle.animation.internal.FrameBuffer;
+import circle.animation.internal.SkylinePacker;
+
+/**
+ * TextureAtlas packs every frame of every usable Animation of an
+ * AnimationGroup into a few large pages. Each frame is packed trimmed of its
+ * transparent border. Drawing from an atlas copies part of a page
+ * so every frame comes from the same few images instead of one sheet per
+ * Animation.
+ * 
+ * @author Brian Jensen
+ * @see AnimationGroup#buildAtlas(int)
+ */
+public class TextureAtlas {
+	// Space left between frames on a page
+	private static final int PADDING = 1;
+	// Pages holding the packed frames
+	private final BufferedImage[] pages;
+	// Animations packed by template index. A template index given to another
+	// Animation after the atlas was built is not drawn from the atlas
+	private final Animation[] templates;
+	// Index of the first frame of each template in the frame arrays
+	private final int[] first;
+	// Page, position on the page, size and offset from the Animation position
+	// of each frame. A width of 0 means the frame is fully transparent
+	private final int[] page;
+	private final int[] sx;
+	private final int[] sy;
+	private final int[] width;
+	private final int[] height;
+	private final int[] offsetX;
+	private final int[] offsetY;
+
+	/**
+	 * Packs the frames of Animations into a new TextureAtlas
+	 * 
+	 * @param templates
+	 *            Animations by template index, null for evicted Animations
+	 * @param pageSize
+	 *            Width and Height of each page. Frames bigger than this get a
+	 *            page of their own
+	 */
+	TextureAtlas(Animation[] templates, int pageSize) {
+		this.templates = templates.clone();
+		this.first = new int[templates.length + 1];
+		for (int t = 0; t < templates.length; t++)
+			first[t + 1] = first[t] + (templates[t] == null ? 0 : templates[t].numOfFrames);
+		int frames = first[templates.length];
+		page = new int[frames];
+		sx = new int[frames];
+		sy = new int[frames];
+		width = new int[frames];
+		height = new int[frames];
+		offsetX = new int[frames];
+		offsetY = new int[frames];
+		BufferedImage[] images = new BufferedImage[frames];
+		for (int t = 0; t < templates.length; t++) {
+			// Evicted from the AnimationGroup
+			if (templates[t] == null)
+				continue;
+			FrameBuffer fb = templates[t].animation;
+			for (int f = 0; f < templates[t].numOfFrames; f++) {
+				int i = first[t] + f;
+				images[i] = fb.trimmed[f];
+				if (images[i] == null)
+					continue;
+				width[i] = images[i].getWidth();
+				height[i] = images[i].getHeight();
+				offsetX[i] = fb.trimX[f];
+				offsetY[i] = fb.trimY[f];
+			}
+		}
+		// Tallest frames first packs tightest
+		Integer[] order = new Integer[frames];
+		for (int i = 0; i < frames; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return height[b] != height[a] ? height[b] - height[a] : width[b] - width[a];
+			}
+		});
+		ArrayList<SkylinePacker> packers = new ArrayList<SkylinePacker>();
+		ArrayList<int[]> sizes = new ArrayList<int[]>();
+		for (int i : order) {
+			if (width[i] == 0)
+				continue;
+			int w = width[i] + PADDING;
+			int h = height[i] + PADDING;
+			int p = 0;
+			while (p < packers.size() && !packers.get(p).place(w, h))
+				p++;
+			if (p == packers.size()) {
+				int[] size = { Math.max(pageSize, w), Math.max(pageSize, h), 0, 0 };
+				packers.add(new SkylinePacker(size[0], size[1]));
+				sizes.add(size);
+				packers.get(p).place(w, h);
+			}
+			SkylinePacker packer = packers.get(p);
+			page[i] = p;
+			sx[i] = packer.getX();
+			sy[i] = packer.getY();
+			// Remember how much of the page is used so it can be cropped
+			int[] size = sizes.get(p);
+			size[2] = Math.max(size[2], sx[i] + width[i]);
+			size[3] = Math.max(size[3], sy[i] + height[i]);
+		}
+		pages = new BufferedImage[packers.size()];
+		Graphics2D[] g2 = new Graphics2D[pages.length];
+		for (int p = 0; p < pages.length; p++) {
+			pages[p] = new BufferedImage(Math.max(sizes.get(p)[2], 1), Math.max(sizes.get(p)[3], 1),
+					BufferedImage.TYPE_INT_ARGB);
+			g2[p] = pages[p].createGraphics();
+			g2[p].setComposite(AlphaComposite.Src);
+		}
+		for (int i = 0; i < frames; i++)
+			if (width[i] > 0)
+				g2[page[i]].drawImage(images[i], sx[i], sy[i], null);
+		for (Graphics2D g : g2)
+			g.dispose();
+	}
+
+	/**
+	 * Draws a frame from the atlas
+	 * 
+	 * @param g2
+	 *            Graphics2D being used to draw Images to the screen
+	 * @param template
+	 *            template index of the Animation
+	 * @param animation
+	 *            Animation using the template index
+	 * @param frame
+	 *            frame of the Animation to draw
+	 * @param x
+	 *            x position of the Animation
+	 * @param y
+	 *            y position of the Animation
+	 * @return false if the Animation was added after the atlas was built
+	 */
+	boolean draw(Graphics2D g2, int template, Animation animation, int frame, int x, int y) {
+		if (template >= templates.length || templates[template] != animation)
+			return false;
+		int i = first[template] + frame;
+		int w = width[i];
+		if (w == 0)
+			return true;
+		int h = height[i];
+		int dx = x + offsetX[i];
+		int dy = y + offsetY[i];
+		g2.drawImage(pages[page[i]], dx, dy, dx + w, dy + h, sx[i], sy[i], sx[i] + w, sy[i] + h, null);
+		return true;
+	}
+
+	/**
+	 * @return Number of pages in the atlas
+	 */
+	public int getPageCount() {
+		return pages.length;
+	}
+
+	/**
+	 * @param index
+	 *            page to get
+	 * @return Image of a page
+	 */
+	public BufferedImage getPage(int index) {
+		return pages[index];
+	}
+
+	/**
+	 * @return Bytes of pixels held by every page
+	 */
+	public long getBytes() {
+		long bytes = 0;
+		for (BufferedImage p : pages)
+			bytes += 4L * p.getWidth() * p.getHeight();
+		return bytes;
+	}
+}
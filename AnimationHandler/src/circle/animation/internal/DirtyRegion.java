@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation.internal;
+
+/**
+ * DirtyRegion collects the areas of the screen that changed into a small set
+ * of rectangles. A rectangle added that overlaps one already in the set is
+ * merged into it. Once the set is full, a new rectangle is merged into the
+ * one it grows the least, so the set never holds more than its limit no
+ * matter how many areas changed. Adding creates no objects.
+ */
+public class DirtyRegion {
+	// Left, top, right and bottom of each rectangle, right and bottom are
+	// exclusive
+	private final int[] left;
+	private final int[] top;
+	private final int[] right;
+	private final int[] bottom;
+	// Number of rectangles in the set
+	private int count;
+
+	/**
+	 * Creates a new empty DirtyRegion
+	 * 
+	 * @param limit
+	 *            Most rectangles to keep
+	 */
+	public DirtyRegion(int limit) {
+		limit = Math.max(limit, 1);
+		left = new int[limit];
+		top = new int[limit];
+		right = new int[limit];
+		bottom = new int[limit];
+	}
+
+	/**
+	 * Adds the area a frame covers
+	 * 
+	 * @param x
+	 *            x position of the frame
+	 * @param y
+	 *            y position of the frame
+	 * @param w
+	 *            Width of the frame
+	 * @param h
+	 *            Height of the frame
+	 * @param rotate
+	 *            true if the frame is drawn rotated about its center, which
+	 *            covers the circle through its corners
+	 */
+	public void addFrame(int x, int y, int w, int h, boolean rotate) {
+		if (!rotate) {
+			add(x, y, x + w, y + h);
+			return;
+		}
+		int r = (int) Math.ceil(Math.sqrt((double) w * w + (double) h * h) / 2);
+		int cx = x + w / 2;
+		int cy = y + h / 2;
+		add(cx - r, cy - r, cx + r, cy + r);
+	}
+
+	/**
+	 * Adds a changed area
+	 * 
+	 * @param l
+	 *            Left of the area
+	 * @param t
+	 *            Top of the area
+	 * @param r
+	 *            Right of the area, exclusive
+	 * @param b
+	 *            Bottom of the area, exclusive
+	 */
+	public void add(int l, int t, int r, int b) {
+		if (l >= r || t >= b)
+			return;
+		// Merge with every rectangle it overlaps until it overlaps none
+		for (int i = 0; i < count; i++) {
+			if (l < right[i] && r > left[i] && t < bottom[i] && b > top[i]) {
+				l = Math.min(l, left[i]);
+				t = Math.min(t, top[i]);
+				r = Math.max(r, right[i]);
+				b = Math.max(b, bottom[i]);
+				removeAt(i);
+				// The merged rectangle is larger, look at every one again
+				i = -1;
+			}
+		}
+		if (count == left.length) {
+			// Full, grow the rectangle that gains the least area
+			int best = 0;
+			long bestGrowth = Long.MAX_VALUE;
+			for (int i = 0; i < count; i++) {
+				long growth = area(Math.min(l, left[i]), Math.min(t, top[i]), Math.max(r, right[i]),
+						Math.max(b, bottom[i])) - area(left[i], top[i], right[i], bottom[i]);
+				if (growth < bestGrowth) {
+					bestGrowth = growth;
+					best = i;
+				}
+			}
+			l = Math.min(l, left[best]);
+			t = Math.min(t, top[best]);
+			r = Math.max(r, right[best]);
+			b = Math.max(b, bottom[best]);
+			removeAt(best);
+			// The grown rectangle may now overlap others
+			add(l, t, r, b);
+			return;
+		}
+		left[count] = l;
+		top[count] = t;
+		right[count] = r;
+		bottom[count] = b;
+		count++;
+	}
+
+	/**
+	 * Adds every changed area of another set
+	 * 
+	 * @param other
+	 *            DirtyRegion to add the rectangles of
+	 */
+	public void add(DirtyRegion other) {
+		for (int i = 0; i < other.count; i++)
+			add(other.left[i], other.top[i], other.right[i], other.bottom[i]);
+	}
+
+	/**
+	 * @return Number of rectangles in the set
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Gets the left of a rectangle
+	 * 
+	 * @param i
+	 *            Index of the rectangle
+	 * @return Left of the rectangle
+	 */
+	public int getX(int i) {
+		return left[i];
+	}
+
+	/**
+	 * Gets the top of a rectangle
+	 * 
+	 * @param i
+	 *            Index of the rectangle
+	 * @return Top of the rectangle
+	 */
+	public int getY(int i) {
+		return top[i];
+	}
+
+	/**
+	 * Gets the width of a rectangle
+	 * 
+	 * @param i
+	 *            Index of the rectangle
+	 * @return Width of the rectangle
+	 */
+	public int getWidth(int i) {
+		return right[i] - left[i];
+	}
+
+	/**
+	 * Gets the height of a rectangle
+	 * 
+	 * @param i
+	 *            Index of the rectangle
+	 * @return Height of the rectangle
+	 */
+	public int getHeight(int i) {
+		return bottom[i] - top[i];
+	}
+
+	/**
+	 * Removes every rectangle
+	 */
+	public void clear() {
+		count = 0;
+	}
+
+	/**
+	 * Removes a rectangle by moving the last one into its place
+	 * 
+	 * @param i
+	 *            Index of the rectangle
+	 */
+	private void removeAt(int i) {
+		count--;
+		left[i] = left[count];
+		top[i] = top[count];
+		right[i] = right[count];
+		bottom[i] = bottom[count];
+	}
+
+	/**
+	 * Gets the area of a rectangle
+	 * 
+	 * @param l
+	 *            Left of the rectangle
+	 * @param t
+	 *            Top of the rectangle
+	 * @param r
+	 *            Right of the rectangle, exclusive
+	 * @param b
+	 *            Bottom of the rectangle, exclusive
+	 * @return Width times Height
+	 */
+	private static long area(int l, int t, int r, int b) {
+		return (long) (r - l) * (b - t);
+	}
+}
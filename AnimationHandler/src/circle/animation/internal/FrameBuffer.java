@@ -30,6 +30,13 @@ import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 import javax.swing.ImageIcon;
@@ -37,13 +44,36 @@ import javax.swing.ImageIcon;
 /**
  * FrameBuffer contains the individual frames of a BufferedImage. Implementing
  * Serialization allows for saving and loading from the file system.
+ * <p>
+ * The sheet is written as raw ARGB pixel rows after the frame size and read
+ * straight back into a TYPE_INT_ARGB BufferedImage, so loading does not need
+ * an ImageIcon or a display. Streams written before this stored the sheet in
+ * an ImageIcon and can still be read.
  */
 public class FrameBuffer implements Serializable {
 	private static final long serialVersionUID = -8674065405735141416L;
+	// Fields kept in the stream. imageIcon is only set by older streams
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("frameSize", Dimension.class),
+			new ObjectStreamField("imageIcon", ImageIcon.class) };
+	// The full Image every frame is split from
+	public transient BufferedImage sheet;
 	// Contains each frame of the FrameBuffer
 	public transient BufferedImage[] frameBuffer;
-	// The full Image for Serialization
-	public ImageIcon imageIcon;
+	// Each frame trimmed to the pixels that are not fully transparent, null
+	// for a frame that is fully transparent
+	public transient BufferedImage[] trimmed;
+	// Offset of each trimmed frame from the top left of the frame
+	public transient int[] trimX;
+	public transient int[] trimY;
+	// Pixels backing the sheet, fetched when first asked for
+	private transient int[] pixels;
+	// Index in pixels of the top left pixel of the sheet
+	private transient int pixelOffset;
+	// Number of pixels from one row of the sheet to the next
+	private transient int scanline;
+	// Sheet read from an older stream, converted in init()
+	private transient ImageIcon legacyIcon;
 	// Width and Height of each frame
 	private Dimension frameSize;
 
@@ -51,22 +81,84 @@ public class FrameBuffer implements Serializable {
 	 * Initialized the FrameBuffer with the given parameters
 	 * 
 	 * @param src
-	 *            Image to convert to individual frames
+	 *            Image to convert to individual frames. Converted to
+	 *            TYPE_INT_ARGB first if it is another type
 	 * @param frameSize
 	 *            Width and Height of each frame
 	 */
 	public FrameBuffer(BufferedImage src, Dimension frameSize) {
-		imageIcon = new ImageIcon(src);
 		this.frameSize = frameSize;
+		if (src.getType() != BufferedImage.TYPE_INT_ARGB) {
+			BufferedImage argb = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g2 = argb.createGraphics();
+			g2.drawImage(src, 0, 0, null);
+			g2.dispose();
+			src = argb;
+		}
+		sheet = src;
 		frameBuffer = SplitImage(src, this.frameSize);
+		trim();
 	}
 
 	/**
 	 * Initializes this FrameBuffer. This must be called before using the
-	 * FrameBuffer when loading it after Serialization.
+	 * FrameBuffer when loading it after Serialization. Does nothing if the
+	 * frames have already been split.
 	 */
 	public void init() {
-		frameBuffer = SplitImage(buffer(this.imageIcon), this.frameSize);
+		if (frameBuffer != null)
+			return;
+		if (sheet == null) {
+			sheet = buffer(legacyIcon);
+			legacyIcon = null;
+		}
+		frameBuffer = SplitImage(sheet, this.frameSize);
+		trim();
+	}
+
+	/**
+	 * Gets the ARGB pixels backing the sheet. Every frame reads from and
+	 * writes to this array.
+	 * <p>
+	 * Java2D can no longer keep a copy of the sheet in video memory once its
+	 * pixels have been taken, so this is only done when first asked for.
+	 * 
+	 * @return Pixels of the sheet
+	 */
+	public int[] getPixels() {
+		if (pixels == null) {
+			WritableRaster raster = sheet.getRaster();
+			DataBufferInt data = (DataBufferInt) raster.getDataBuffer();
+			scanline = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+			pixelOffset = data.getOffset() - raster.getSampleModelTranslateY() * scanline
+					- raster.getSampleModelTranslateX();
+			pixels = data.getData();
+		}
+		return pixels;
+	}
+
+	/**
+	 * Gets the index in getPixels() of the top left pixel of a frame
+	 * 
+	 * @param frame
+	 *            The frame to find
+	 * @return Index of the top left pixel of the frame
+	 */
+	public int getPixelOffset(int frame) {
+		getPixels();
+		int across = sheet.getWidth() / frameSize.width;
+		return pixelOffset + (frame / across) * frameSize.height * scanline + (frame % across) * frameSize.width;
+	}
+
+	/**
+	 * Gets the number of pixels in getPixels() from one row of a frame to the
+	 * next
+	 * 
+	 * @return Scanline stride of the sheet
+	 */
+	public int getScanlineStride() {
+		getPixels();
+		return scanline;
 	}
 
 	/**
@@ -86,6 +178,110 @@ public class FrameBuffer implements Serializable {
 		return dest;
 	}
 
+	/**
+	 * Writes the frame size followed by the width, height and ARGB pixels of
+	 * the sheet one row at a time. A FrameBuffer read from an older stream
+	 * and not yet initialized writes the pixels of its ImageIcon.
+	 * 
+	 * @param out
+	 *            Stream to write to
+	 * @throws IOException
+	 *             If writing fails
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("frameSize", frameSize);
+		fields.put("imageIcon", null);
+		out.writeFields();
+		BufferedImage sheet = this.sheet != null ? this.sheet : buffer(legacyIcon);
+		int w = sheet.getWidth();
+		int h = sheet.getHeight();
+		out.writeInt(w);
+		out.writeInt(h);
+		int[] row = new int[w];
+		byte[] bytes = new byte[w * 4];
+		for (int y = 0; y < h; y++) {
+			sheet.getRGB(0, y, w, 1, row, 0, w);
+			for (int x = 0, b = 0; x < w; x++) {
+				int p = row[x];
+				bytes[b++] = (byte) (p >>> 24);
+				bytes[b++] = (byte) (p >>> 16);
+				bytes[b++] = (byte) (p >>> 8);
+				bytes[b++] = (byte) p;
+			}
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Reads the frame size and copies the pixel rows straight into the raster
+	 * of a new sheet. An older stream holds an ImageIcon instead, which is
+	 * kept until init() converts it.
+	 * 
+	 * @param in
+	 *            Stream to read from
+	 * @throws IOException
+	 *             If reading fails
+	 * @throws ClassNotFoundException
+	 *             If a class in the stream can not be found
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		frameSize = (Dimension) fields.get("frameSize", null);
+		legacyIcon = (ImageIcon) fields.get("imageIcon", null);
+		if (legacyIcon != null)
+			return;
+		int w = in.readInt();
+		int h = in.readInt();
+		sheet = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		WritableRaster raster = sheet.getRaster();
+		int[] row = new int[w];
+		byte[] bytes = new byte[w * 4];
+		for (int y = 0; y < h; y++) {
+			in.readFully(bytes);
+			for (int x = 0, b = 0; x < w; x++, b += 4)
+				row[x] = (bytes[b] << 24) | ((bytes[b + 1] & 0xFF) << 16) | ((bytes[b + 2] & 0xFF) << 8)
+						| (bytes[b + 3] & 0xFF);
+			raster.setDataElements(0, y, w, 1, row);
+		}
+	}
+
+	/**
+	 * Finds the smallest part of each frame holding every pixel that is not
+	 * fully transparent. Drawing only that part skips the empty border.
+	 */
+	private void trim() {
+		int frames = frameBuffer.length;
+		trimmed = new BufferedImage[frames];
+		trimX = new int[frames];
+		trimY = new int[frames];
+		int w = frameSize.width;
+		int h = frameSize.height;
+		int[] row = new int[w];
+		for (int i = 0; i < frames; i++) {
+			BufferedImage frame = frameBuffer[i];
+			int minX = w, minY = h, maxX = -1, maxY = -1;
+			for (int y = 0; y < h; y++) {
+				frame.getRGB(0, y, w, 1, row, 0, w);
+				for (int x = 0; x < w; x++)
+					if ((row[x] >>> 24) != 0) {
+						if (x < minX)
+							minX = x;
+						if (x > maxX)
+							maxX = x;
+						if (y < minY)
+							minY = y;
+						maxY = y;
+					}
+			}
+			if (maxX < 0)
+				continue;
+			trimX[i] = minX;
+			trimY[i] = minY;
+			trimmed[i] = frame.getSubimage(minX, minY, maxX - minX + 1, maxY - minY + 1);
+		}
+	}
+
 	/**
 	 * Splits the FrameBuffer into individual frames.
 	 * 
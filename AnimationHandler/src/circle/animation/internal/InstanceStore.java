@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation.internal;
+
+import java.util.Arrays;
+
+/**
+ * InstanceStore holds the state of every displaying Animation in parallel
+ * arrays. Live instances are kept packed in slots 0 to size - 1 so updating
+ * and drawing is a linear scan. Removing an instance moves the last instance
+ * into the freed slot. Each instance is also given a handle that stays the
+ * same for its lifetime even when its slot changes.
+ * <p>
+ * A handle is a long holding the handle index in the low 32 bits and the
+ * generation of that index in the high 32 bits. The generation goes up each
+ * time an index is released, so a handle kept after its instance was removed
+ * is never mistaken for the instance given the index next. 0 is never a
+ * handle.
+ * <p>
+ * The arrays act as a pool: a removed instance's slot and handle index are
+ * given to the next instance added, so adding only creates objects when the
+ * arrays have to grow.
+ * <p>
+ * Positions must be changed with move so the SpatialGrid, if one is set,
+ * stays up to date.
+ */
+public class InstanceStore {
+	// Number of slots in the arrays to start with
+	private static final int DEFAULT_CAPACITY = 64;
+	/**
+	 * Bytes of array space each instance takes: six int, two double and one
+	 * long slot arrays, three boolean slot arrays and three int handle index
+	 * arrays (slotOf, generation and freeHandles)
+	 */
+	public static final int BYTES_PER_INSTANCE = 6 * 4 + 3 * 8 + 3 * 1 + 3 * 4;
+	// Number of live instances. Slots 0 to size - 1 are in use
+	public int size;
+	// Index of the template Animation each instance is playing
+	public int[] template;
+	// Current frame of each instance
+	public int[] frame;
+	// X position of each instance
+	public int[] x;
+	// Y position of each instance
+	public int[] y;
+	// Current rotation of each instance in degrees
+	public double[] rotation;
+	// Degrees added to the rotation each update
+	public double[] rotationAmount;
+	// True if the instance is drawn rotated
+	public boolean[] rotate;
+	// True if the instance loops, false if it plays once
+	public boolean[] loop;
+	// Layer of each instance, lower layers are drawn first when sorting
+	public int[] layer;
+	// Nanoseconds the current frame of each instance has been shown
+	public long[] elapsed;
+	// True if the frame or rotation of the instance changed in the last update
+	public boolean[] changed;
+	// Handle index of the instance in each slot
+	public int[] handle;
+	// Slot of each handle index, -1 if the index is not in use
+	private int[] slotOf;
+	// Current generation of each handle index
+	private int[] generation;
+	// Handle indexes that have been released and can be given out again
+	private int[] freeHandles;
+	private int freeCount;
+	// Next handle index that has never been given out
+	private int nextHandle;
+	// Live instances of each template index
+	private int[] templateCount = new int[0];
+	// Finds instances by position, null if not in use
+	private SpatialGrid grid;
+	// Adds that had to grow the arrays
+	private long misses;
+	// Adds that reused the handle index of a removed instance
+	private long recycled;
+	// Most instances stored at once
+	private int peak;
+
+	/**
+	 * Creates a new empty InstanceStore
+	 */
+	public InstanceStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new empty InstanceStore
+	 * 
+	 * @param capacity
+	 *            Number of instances to make room for before growing
+	 */
+	public InstanceStore(int capacity) {
+		capacity = Math.max(capacity, 1);
+		template = new int[capacity];
+		frame = new int[capacity];
+		x = new int[capacity];
+		y = new int[capacity];
+		rotation = new double[capacity];
+		rotationAmount = new double[capacity];
+		rotate = new boolean[capacity];
+		loop = new boolean[capacity];
+		layer = new int[capacity];
+		elapsed = new long[capacity];
+		changed = new boolean[capacity];
+		handle = new int[capacity];
+		slotOf = new int[capacity];
+		generation = new int[capacity];
+		freeHandles = new int[capacity];
+		Arrays.fill(slotOf, -1);
+	}
+
+	/**
+	 * Adds a new instance at frame 0 and layer 0 with no rotation that plays
+	 * once
+	 * 
+	 * @param templateIndex
+	 *            Index of the template Animation to play
+	 * @param x
+	 *            x position of the instance
+	 * @param y
+	 *            y position of the instance
+	 * @return Handle of the new instance
+	 */
+	public long add(int templateIndex, int x, int y) {
+		boolean grew = false;
+		if (size == this.template.length) {
+			grow();
+			grew = true;
+		}
+		int h;
+		if (freeCount > 0) {
+			h = freeHandles[--freeCount];
+			recycled++;
+		} else {
+			h = nextHandle++;
+			if (h >= slotOf.length) {
+				int old = slotOf.length;
+				slotOf = Arrays.copyOf(slotOf, Math.max(h + 1, old * 2));
+				generation = Arrays.copyOf(generation, slotOf.length);
+				Arrays.fill(slotOf, old, slotOf.length, -1);
+				grew = true;
+			}
+			generation[h] = 1;
+		}
+		if (grew)
+			misses++;
+		int s = size++;
+		if (size > peak)
+			peak = size;
+		if (templateIndex >= templateCount.length)
+			templateCount = Arrays.copyOf(templateCount, Math.max(templateIndex + 1, templateCount.length * 2));
+		templateCount[templateIndex]++;
+		this.template[s] = templateIndex;
+		this.frame[s] = 0;
+		this.x[s] = x;
+		this.y[s] = y;
+		this.rotation[s] = 0;
+		this.rotationAmount[s] = 0;
+		this.rotate[s] = false;
+		this.loop[s] = false;
+		this.layer[s] = 0;
+		this.elapsed[s] = 0;
+		this.changed[s] = true;
+		this.handle[s] = h;
+		slotOf[h] = s;
+		if (grid != null)
+			grid.insert(h, x, y);
+		return handleAt(s);
+	}
+
+	/**
+	 * Gets the handle of the instance in a slot
+	 * 
+	 * @param s
+	 *            Slot of the instance
+	 * @return Handle of the instance
+	 */
+	public long handleAt(int s) {
+		int h = handle[s];
+		return ((long) generation[h] << 32) | (h & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Gets the slot an instance is currently stored in
+	 * 
+	 * @param handle
+	 *            Handle of the instance
+	 * @return Slot of the instance or -1 if the handle is not in use or was
+	 *         released
+	 */
+	public int slot(long handle) {
+		int h = (int) handle;
+		if (h < 0 || h >= nextHandle || generation[h] != (int) (handle >>> 32))
+			return -1;
+		return slotOf[h];
+	}
+
+	/**
+	 * Removes an instance using its handle
+	 * 
+	 * @param handle
+	 *            Handle of the instance to remove
+	 * @return false if the handle was not in use or was released
+	 */
+	public boolean remove(long handle) {
+		int s = slot(handle);
+		if (s < 0)
+			return false;
+		removeSlot(s);
+		return true;
+	}
+
+	/**
+	 * Removes the instance in a slot by moving the last instance into it
+	 * 
+	 * @param s
+	 *            Slot of the instance to remove
+	 */
+	public void removeSlot(int s) {
+		int h = handle[s];
+		templateCount[template[s]]--;
+		int last = --size;
+		if (s != last) {
+			template[s] = template[last];
+			frame[s] = frame[last];
+			x[s] = x[last];
+			y[s] = y[last];
+			rotation[s] = rotation[last];
+			rotationAmount[s] = rotationAmount[last];
+			rotate[s] = rotate[last];
+			loop[s] = loop[last];
+			layer[s] = layer[last];
+			elapsed[s] = elapsed[last];
+			changed[s] = changed[last];
+			handle[s] = handle[last];
+			slotOf[handle[s]] = s;
+		}
+		slotOf[h] = -1;
+		if (grid != null)
+			grid.remove(h);
+		// Handles still held for this index no longer match
+		if (++generation[h] == 0)
+			generation[h] = 1;
+		if (freeCount == freeHandles.length)
+			freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+		freeHandles[freeCount++] = h;
+	}
+
+	/**
+	 * Gets the number of live instances playing a template
+	 * 
+	 * @param templateIndex
+	 *            Index of the template Animation
+	 * @return Number of instances stored with the template index
+	 */
+	public int count(int templateIndex) {
+		return templateIndex < templateCount.length ? templateCount[templateIndex] : 0;
+	}
+
+	/**
+	 * Moves the instance in a slot, keeping the SpatialGrid up to date
+	 * 
+	 * @param s
+	 *            Slot of the instance to move
+	 * @param x
+	 *            New x position of the instance
+	 * @param y
+	 *            New y position of the instance
+	 */
+	public void move(int s, int x, int y) {
+		this.x[s] = x;
+		this.y[s] = y;
+		if (grid != null)
+			grid.move(handle[s], x, y);
+	}
+
+	/**
+	 * Gets the slot of a handle index found by the SpatialGrid
+	 * 
+	 * @param h
+	 *            Handle index of the instance
+	 * @return Slot of the instance
+	 */
+	public int slotOfIndex(int h) {
+		return slotOf[h];
+	}
+
+	/**
+	 * Sets the SpatialGrid kept up to date as instances are added, moved and
+	 * removed. Every instance already stored is added to it.
+	 * 
+	 * @param grid
+	 *            Empty SpatialGrid to use, null to stop using one
+	 */
+	public void setGrid(SpatialGrid grid) {
+		this.grid = grid;
+		if (grid != null)
+			for (int s = 0; s < size; s++)
+				grid.insert(handle[s], x[s], y[s]);
+	}
+
+	/**
+	 * @return SpatialGrid kept up to date, null if not in use
+	 */
+	public SpatialGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * Removes every instance
+	 */
+	public void clear() {
+		while (size > 0)
+			removeSlot(size - 1);
+	}
+
+	/**
+	 * Makes room for a number of instances so adding them does not need to
+	 * grow the arrays
+	 * 
+	 * @param capacity
+	 *            Number of instances to make room for
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > template.length)
+			grow(capacity);
+		if (capacity > slotOf.length) {
+			int old = slotOf.length;
+			slotOf = Arrays.copyOf(slotOf, capacity);
+			generation = Arrays.copyOf(generation, capacity);
+			Arrays.fill(slotOf, old, capacity, -1);
+		}
+		if (capacity > freeHandles.length)
+			freeHandles = Arrays.copyOf(freeHandles, capacity);
+	}
+
+	/**
+	 * Gets the number of instances there is room for before growing
+	 * 
+	 * @return Number of slots in the arrays
+	 */
+	public int capacity() {
+		return template.length;
+	}
+
+	/**
+	 * Grows or shrinks the slot arrays to room for a number of instances, but
+	 * never below the number stored. Shrinking gives back the memory left
+	 * after a burst of instances.
+	 * 
+	 * @param capacity
+	 *            Number of instances to make room for
+	 */
+	public void setCapacity(int capacity) {
+		capacity = Math.max(Math.max(capacity, size), 1);
+		if (capacity > template.length)
+			ensureCapacity(capacity);
+		else if (capacity < template.length)
+			grow(capacity);
+	}
+
+	/**
+	 * @return Number of adds that had to grow the arrays
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return Number of adds that reused the handle index of a removed
+	 *         instance
+	 */
+	public long getRecycled() {
+		return recycled;
+	}
+
+	/**
+	 * @return Most instances stored at once
+	 */
+	public int getPeak() {
+		return peak;
+	}
+
+	/**
+	 * Sets the misses and recycled counts back to 0 and the peak to the
+	 * number of instances stored
+	 */
+	public void resetStats() {
+		misses = 0;
+		recycled = 0;
+		peak = size;
+	}
+
+	/**
+	 * Doubles the room in each of the slot arrays
+	 */
+	private void grow() {
+		grow(template.length * 2);
+	}
+
+	/**
+	 * Grows or shrinks each of the slot arrays
+	 * 
+	 * @param capacity
+	 *            New number of slots in the arrays
+	 */
+	private void grow(int capacity) {
+		template = Arrays.copyOf(template, capacity);
+		frame = Arrays.copyOf(frame, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		rotation = Arrays.copyOf(rotation, capacity);
+		rotationAmount = Arrays.copyOf(rotationAmount, capacity);
+		rotate = Arrays.copyOf(rotate, capacity);
+		loop = Arrays.copyOf(loop, capacity);
+		layer = Arrays.copyOf(layer, capacity);
+		elapsed = Arrays.copyOf(elapsed, capacity);
+		changed = Arrays.copyOf(changed, capacity);
+		handle = Arrays.copyOf(handle, capacity);
+	}
+}
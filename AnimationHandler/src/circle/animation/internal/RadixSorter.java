@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation.internal;
+
+import java.util.Arrays;
+
+/**
+ * RadixSorter orders slots by layer, then template, then frame with a least
+ * significant digit radix sort, one byte at a time. Slots with the same keys
+ * keep the order they were given in. Bytes that are the same for every slot
+ * are skipped, so the usual case of one layer and a few templates with a few
+ * frames each takes two passes. The arrays are reused between sorts so
+ * sorting creates no objects once they are big enough.
+ * <p>
+ * A RadixSorter must only be used by one thread at a time.
+ */
+public class RadixSorter {
+	// Slots in sorted order and the buffer each pass scatters into
+	private int[] order = new int[64];
+	private int[] scratch = new int[64];
+	// Number of slots in each bucket of a pass
+	private final int[] count = new int[256];
+
+	/**
+	 * Sorts slots by layer, then template, then frame
+	 * 
+	 * @param slots
+	 *            Slots to sort, null for slots 0 to n - 1
+	 * @param n
+	 *            Number of slots to sort
+	 * @param layer
+	 *            Layer of each slot, sorted as signed
+	 * @param template
+	 *            Template index of each slot
+	 * @param frame
+	 *            Frame of each slot
+	 * @return Array holding the sorted slots in its first n entries. It is
+	 *         reused by the next sort
+	 */
+	public int[] sort(int[] slots, int n, int[] layer, int[] template, int[] frame) {
+		if (n > order.length) {
+			order = new int[Math.max(n, order.length * 2)];
+			scratch = new int[order.length];
+		}
+		if (slots != null)
+			System.arraycopy(slots, 0, order, 0, n);
+		else
+			for (int i = 0; i < n; i++)
+				order[i] = i;
+		if (n < 2)
+			return order;
+		sortBy(frame, 0, n);
+		sortBy(template, 0, n);
+		// Flipping the sign bit orders negative layers first
+		sortBy(layer, Integer.MIN_VALUE, n);
+		return order;
+	}
+
+	/**
+	 * Sorts order by one key, keeping the order of equal keys
+	 * 
+	 * @param key
+	 *            Key of each slot
+	 * @param flip
+	 *            Bits flipped in each key before sorting
+	 * @param n
+	 *            Number of slots being sorted
+	 */
+	private void sortBy(int[] key, int flip, int n) {
+		// Bits that differ between any two keys, no pass is needed for a byte
+		// without any
+		int first = key[order[0]] ^ flip;
+		int differ = 0;
+		for (int i = 1; i < n; i++)
+			differ |= (key[order[i]] ^ flip) ^ first;
+		for (int shift = 0; shift < 32; shift += 8) {
+			if (((differ >>> shift) & 0xFF) == 0)
+				continue;
+			Arrays.fill(count, 0);
+			for (int i = 0; i < n; i++)
+				count[((key[order[i]] ^ flip) >>> shift) & 0xFF]++;
+			for (int b = 0, sum = 0; b < 256; b++) {
+				int c = count[b];
+				count[b] = sum;
+				sum += c;
+			}
+			for (int i = 0; i < n; i++) {
+				int s = order[i];
+				scratch[count[((key[s] ^ flip) >>> shift) & 0xFF]++] = s;
+			}
+			int[] t = order;
+			order = scratch;
+			scratch = t;
+		}
+	}
+}
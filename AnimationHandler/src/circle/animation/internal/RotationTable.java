@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation.internal;
+
+/**
+ * RotationTable splits a full turn into a number of equal steps and holds the
+ * sine and cosine of each step so rotated Animations can be drawn without
+ * calling Math.sin and Math.cos.
+ */
+public class RotationTable {
+	// Number of steps in a full turn
+	private final int steps;
+	// Sine of each step
+	private final double[] sin;
+	// Cosine of each step
+	private final double[] cos;
+
+	/**
+	 * Creates a new RotationTable
+	 * 
+	 * @param steps
+	 *            Number of steps in a full turn. 360 gives one step per degree
+	 */
+	public RotationTable(int steps) {
+		if (steps < 1)
+			throw new IllegalArgumentException("steps must be at least 1: " + steps);
+		this.steps = steps;
+		this.sin = new double[steps];
+		this.cos = new double[steps];
+		for (int i = 0; i < steps; i++) {
+			double theta = 2 * Math.PI * i / steps;
+			double s = Math.sin(theta);
+			double c = Math.cos(theta);
+			// Keep quarter turns exact like AffineTransform.rotate does
+			if (s == 1.0 || s == -1.0)
+				c = 0;
+			else if (c == -1.0)
+				s = 0;
+			this.sin[i] = s;
+			this.cos[i] = c;
+		}
+	}
+
+	/**
+	 * Gets the step closest to an angle
+	 * 
+	 * @param angleDeg
+	 *            Angle in degrees, any value
+	 * @return step from 0 to steps - 1
+	 */
+	public int step(double angleDeg) {
+		int step = (int) Math.round((angleDeg % 360.0) * steps / 360.0) % steps;
+		return step < 0 ? step + steps : step;
+	}
+
+	/**
+	 * @return Number of steps in a full turn
+	 */
+	public int getSteps() {
+		return steps;
+	}
+
+	/**
+	 * @param step
+	 *            step from 0 to steps - 1
+	 * @return sine of the step
+	 */
+	public double sin(int step) {
+		return sin[step];
+	}
+
+	/**
+	 * @param step
+	 *            step from 0 to steps - 1
+	 * @return cosine of the step
+	 */
+	public double cos(int step) {
+		return cos[step];
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation.internal;
+
+import java.util.Arrays;
+
+/**
+ * SkylinePacker places rectangles on a page using the skyline bottom-left
+ * method. The top edge of everything placed so far is kept as a list of
+ * segments and each rectangle goes where its bottom edge ends up lowest.
+ */
+public class SkylinePacker {
+	// Width and Height of the page
+	private final int width;
+	private final int height;
+	// Left x, top y and width of each skyline segment, ordered left to right
+	private int[] segX = new int[16];
+	private int[] segY = new int[16];
+	private int[] segW = new int[16];
+	private int count;
+	// Position of the last rectangle placed
+	private int placedX;
+	private int placedY;
+
+	/**
+	 * Creates a new empty SkylinePacker
+	 * 
+	 * @param width
+	 *            Width of the page
+	 * @param height
+	 *            Height of the page
+	 */
+	public SkylinePacker(int width, int height) {
+		this.width = width;
+		this.height = height;
+		segW[0] = width;
+		count = 1;
+	}
+
+	/**
+	 * Places a rectangle on the page
+	 * 
+	 * @param w
+	 *            Width of the rectangle
+	 * @param h
+	 *            Height of the rectangle
+	 * @return false if the rectangle does not fit on the page
+	 */
+	public boolean place(int w, int h) {
+		int best = -1;
+		int bestY = Integer.MAX_VALUE;
+		int bestBottom = Integer.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			int y = fit(i, w, h);
+			if (y >= 0 && (y + h < bestBottom || (y + h == bestBottom && segX[i] < segX[best]))) {
+				best = i;
+				bestY = y;
+				bestBottom = y + h;
+			}
+		}
+		if (best < 0)
+			return false;
+		placedX = segX[best];
+		placedY = bestY;
+		addSegment(best, w, bestY + h);
+		return true;
+	}
+
+	/**
+	 * @return x position of the last rectangle placed
+	 */
+	public int getX() {
+		return placedX;
+	}
+
+	/**
+	 * @return y position of the last rectangle placed
+	 */
+	public int getY() {
+		return placedY;
+	}
+
+	/**
+	 * Gets how high a rectangle would sit with its left edge on a segment
+	 * 
+	 * @param i
+	 *            segment to place the left edge on
+	 * @param w
+	 *            Width of the rectangle
+	 * @param h
+	 *            Height of the rectangle
+	 * @return y position of the rectangle or -1 if it does not fit there
+	 */
+	private int fit(int i, int w, int h) {
+		if (segX[i] + w > width)
+			return -1;
+		int y = 0;
+		int left = w;
+		for (int j = i; left > 0; j++) {
+			y = Math.max(y, segY[j]);
+			if (y + h > height)
+				return -1;
+			left -= segW[j];
+		}
+		return y;
+	}
+
+	/**
+	 * Raises the skyline under a rectangle just placed
+	 * 
+	 * @param i
+	 *            segment the left edge of the rectangle is on
+	 * @param w
+	 *            Width of the rectangle
+	 * @param top
+	 *            y position of the bottom of the rectangle
+	 */
+	private void addSegment(int i, int w, int top) {
+		int x = segX[i];
+		int right = x + w;
+		// Find the segments under the rectangle and cut the last one short
+		int j = i;
+		while (j < count && segX[j] + segW[j] <= right)
+			j++;
+		if (j < count && segX[j] < right) {
+			segW[j] -= right - segX[j];
+			segX[j] = right;
+		}
+		// Replace segments i to j - 1 with the new one
+		int removed = j - i;
+		if (removed == 0) {
+			ensureRoom(count + 1);
+			System.arraycopy(segX, i, segX, i + 1, count - i);
+			System.arraycopy(segY, i, segY, i + 1, count - i);
+			System.arraycopy(segW, i, segW, i + 1, count - i);
+			count++;
+		} else if (removed > 1) {
+			System.arraycopy(segX, j, segX, i + 1, count - j);
+			System.arraycopy(segY, j, segY, i + 1, count - j);
+			System.arraycopy(segW, j, segW, i + 1, count - j);
+			count -= removed - 1;
+		}
+		segX[i] = x;
+		segY[i] = top;
+		segW[i] = w;
+		merge();
+	}
+
+	/**
+	 * Joins neighboring segments at the same height
+	 */
+	private void merge() {
+		int k = 0;
+		for (int i = 1; i < count; i++) {
+			if (segY[i] == segY[k]) {
+				segW[k] += segW[i];
+			} else {
+				k++;
+				segX[k] = segX[i];
+				segY[k] = segY[i];
+				segW[k] = segW[i];
+			}
+		}
+		count = k + 1;
+	}
+
+	/**
+	 * Makes sure there is room for a number of segments
+	 * 
+	 * @param size
+	 *            Number of segments needed
+	 */
+	private void ensureRoom(int size) {
+		if (size > segX.length) {
+			segX = Arrays.copyOf(segX, size * 2);
+			segY = Arrays.copyOf(segY, size * 2);
+			segW = Arrays.copyOf(segW, size * 2);
+		}
+	}
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation.internal;
+
+import java.util.Arrays;
+
+/**
+ * SpatialGrid sorts instances into square cells by the position of their top
+ * left corner so only the instances near an area need to be looked at. The
+ * world is not bounded: cells are hashed into a table of buckets, and each
+ * bucket is a linked list threaded through arrays indexed by the handle index
+ * of the instance. Adding, moving and removing an instance creates no
+ * objects.
+ */
+public class SpatialGrid {
+	// Number of buckets to start with
+	private static final int DEFAULT_BUCKETS = 1024;
+	// Width and Height of each cell
+	private final int cellSize;
+	// First handle index in each bucket, -1 if empty
+	private int[] head;
+	// Next and previous handle index in the same bucket, -1 at the ends
+	private int[] next;
+	private int[] prev;
+	// Cell of each handle index
+	private int[] cellX;
+	private int[] cellY;
+	// Bucket of each handle index, -1 if not in the grid
+	private int[] bucketOf;
+	// Number of instances in the grid
+	private int count;
+
+	/**
+	 * Creates a new empty SpatialGrid
+	 * 
+	 * @param cellSize
+	 *            Width and Height of each cell. A few times the size of a
+	 *            frame works well
+	 */
+	public SpatialGrid(int cellSize) {
+		if (cellSize <= 0)
+			throw new IllegalArgumentException("cellSize must be positive");
+		this.cellSize = cellSize;
+		head = new int[DEFAULT_BUCKETS];
+		Arrays.fill(head, -1);
+		next = new int[0];
+		prev = new int[0];
+		cellX = new int[0];
+		cellY = new int[0];
+		bucketOf = new int[0];
+	}
+
+	/**
+	 * @return Width and Height of each cell
+	 */
+	public int getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * @return Number of instances in the grid
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Adds an instance
+	 * 
+	 * @param h
+	 *            Handle index of the instance
+	 * @param x
+	 *            x position of the instance
+	 * @param y
+	 *            y position of the instance
+	 */
+	public void insert(int h, int x, int y) {
+		if (h >= bucketOf.length)
+			grow(h + 1);
+		if (++count > head.length * 2)
+			rehash(head.length * 4);
+		link(h, Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize));
+	}
+
+	/**
+	 * Removes an instance
+	 * 
+	 * @param h
+	 *            Handle index of the instance
+	 */
+	public void remove(int h) {
+		if (h >= bucketOf.length || bucketOf[h] < 0)
+			return;
+		unlink(h);
+		count--;
+	}
+
+	/**
+	 * Moves an instance, only changing its bucket if it moved to another cell
+	 * 
+	 * @param h
+	 *            Handle index of the instance
+	 * @param x
+	 *            New x position of the instance
+	 * @param y
+	 *            New y position of the instance
+	 */
+	public void move(int h, int x, int y) {
+		int cx = Math.floorDiv(x, cellSize);
+		int cy = Math.floorDiv(y, cellSize);
+		if (cx == cellX[h] && cy == cellY[h])
+			return;
+		unlink(h);
+		link(h, cx, cy);
+	}
+
+	/**
+	 * Removes every instance
+	 */
+	public void clear() {
+		Arrays.fill(head, -1);
+		Arrays.fill(bucketOf, -1);
+		count = 0;
+	}
+
+	/**
+	 * Finds every instance whose top left corner is inside an area. Each
+	 * instance is found once.
+	 * 
+	 * @param x0
+	 *            Left of the area
+	 * @param y0
+	 *            Top of the area
+	 * @param x1
+	 *            Right of the area, exclusive
+	 * @param y1
+	 *            Bottom of the area, exclusive
+	 * @param out
+	 *            Filled with the handle index of each instance found
+	 * @return Number of instances found. Only the first out.length are stored
+	 *         if more were found
+	 */
+	public int query(int x0, int y0, int x1, int y1, int[] out) {
+		if (x0 >= x1 || y0 >= y1)
+			return 0;
+		int cx0 = Math.floorDiv(x0, cellSize);
+		int cy0 = Math.floorDiv(y0, cellSize);
+		int cx1 = Math.floorDiv(x1 - 1, cellSize);
+		int cy1 = Math.floorDiv(y1 - 1, cellSize);
+		int found = 0;
+		long cells = (long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1);
+		if (cells >= head.length) {
+			// Covers more cells than there are buckets, look at every bucket
+			for (int b = 0; b < head.length; b++)
+				for (int h = head[b]; h >= 0; h = next[h])
+					if (cellX[h] >= cx0 && cellX[h] <= cx1 && cellY[h] >= cy0 && cellY[h] <= cy1)
+						found = add(out, found, h);
+			return found;
+		}
+		for (int cy = cy0; cy <= cy1; cy++)
+			for (int cx = cx0; cx <= cx1; cx++)
+				// Other cells can share the bucket, only take this cell
+				for (int h = head[bucket(cx, cy)]; h >= 0; h = next[h])
+					if (cellX[h] == cx && cellY[h] == cy)
+						found = add(out, found, h);
+		return found;
+	}
+
+	/**
+	 * Stores a found instance if there is room
+	 * 
+	 * @param out
+	 *            Handle indexes found
+	 * @param found
+	 *            Number found so far
+	 * @param h
+	 *            Handle index found
+	 * @return Number found including h
+	 */
+	private static int add(int[] out, int found, int h) {
+		if (found < out.length)
+			out[found] = h;
+		return found + 1;
+	}
+
+	/**
+	 * Puts an instance at the front of the bucket of a cell
+	 * 
+	 * @param h
+	 *            Handle index of the instance
+	 * @param cx
+	 *            x of the cell
+	 * @param cy
+	 *            y of the cell
+	 */
+	private void link(int h, int cx, int cy) {
+		int b = bucket(cx, cy);
+		cellX[h] = cx;
+		cellY[h] = cy;
+		bucketOf[h] = b;
+		prev[h] = -1;
+		next[h] = head[b];
+		if (head[b] >= 0)
+			prev[head[b]] = h;
+		head[b] = h;
+	}
+
+	/**
+	 * Takes an instance out of its bucket
+	 * 
+	 * @param h
+	 *            Handle index of the instance
+	 */
+	private void unlink(int h) {
+		int b = bucketOf[h];
+		if (prev[h] >= 0)
+			next[prev[h]] = next[h];
+		else
+			head[b] = next[h];
+		if (next[h] >= 0)
+			prev[next[h]] = prev[h];
+		bucketOf[h] = -1;
+	}
+
+	/**
+	 * Gets the bucket of a cell
+	 * 
+	 * @param cx
+	 *            x of the cell
+	 * @param cy
+	 *            y of the cell
+	 * @return Bucket of the cell
+	 */
+	private int bucket(int cx, int cy) {
+		int hash = cx * 0x9E3779B1 ^ cy * 0x85EBCA77;
+		return (hash ^ (hash >>> 16)) & (head.length - 1);
+	}
+
+	/**
+	 * Grows the arrays indexed by handle index
+	 * 
+	 * @param capacity
+	 *            Number of handle indexes to make room for
+	 */
+	private void grow(int capacity) {
+		int old = bucketOf.length;
+		capacity = Math.max(capacity, Math.max(old * 2, 64));
+		next = Arrays.copyOf(next, capacity);
+		prev = Arrays.copyOf(prev, capacity);
+		cellX = Arrays.copyOf(cellX, capacity);
+		cellY = Arrays.copyOf(cellY, capacity);
+		bucketOf = Arrays.copyOf(bucketOf, capacity);
+		Arrays.fill(bucketOf, old, capacity, -1);
+	}
+
+	/**
+	 * Spreads the instances over more buckets so the lists stay short
+	 * 
+	 * @param buckets
+	 *            New number of buckets, a power of two
+	 */
+	private void rehash(int buckets) {
+		head = new int[buckets];
+		Arrays.fill(head, -1);
+		for (int h = 0; h < bucketOf.length; h++)
+			if (bucketOf[h] >= 0)
+				link(h, cellX[h], cellY[h]);
+	}
+}
@@ -36,12 +36,22 @@ import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -49,6 +59,21 @@ import javax.imageio.ImageIO;
 import javax.swing.JFrame;
 
 public class Helper {
+	// Threads in the shared pool used for loading in the background
+	private static final int LOADER_THREADS = Math.max(2,
+			Math.min(4, Runtime.getRuntime().availableProcessors()));
+	// Shared pool used for loading in the background, created when first used
+	private static Executor sharedLoader;
+	// Loads still running, keyed by what is being loaded
+	private static final ConcurrentHashMap<String, CompletableFuture<?>> pending =
+			new ConcurrentHashMap<String, CompletableFuture<?>>();
+	// Next MediaTracker ID, so loads from different threads do not wait on
+	// each other
+	private final AtomicInteger nextTrackerID = new AtomicInteger();
+	// Executor used for loading in the background, null for the shared pool
+	private Executor loader;
+	// Keeps loaded images so they are not loaded again, null to not keep them
+	private ImageCache cache;
 	// Default toolkit used
 	private Toolkit tk;
 	// Makes sure images are fully loaded before being used
@@ -98,7 +123,9 @@ public class Helper {
 	}
 
 	/**
-	 * Loads an image from the file system using a mediatracker
+	 * Loads an image from the file system using a mediatracker. If an
+	 * ImageCache is set and keeps the image, the kept BufferedImage is
+	 * returned instead.
 	 * 
 	 * @param filename
 	 *            Name of the PNG image to load from the file system. Can be
@@ -106,18 +133,203 @@ public class Helper {
 	 * @return Image loaded from the file system
 	 */
 	public Image loadImage(String filename) {
-		Image i = tk.getImage(getURL(ImageLocation + filename + (filename.endsWith(".png") ? "" : ".png")));
-		tracker.addImage(i, 0);
+		String path = imagePath(filename);
+		BufferedImage cached = cache != null ? cache.get(path) : null;
+		if (cached != null)
+			return cached;
+		Image i = tk.getImage(getURL(path));
+		int id = nextTrackerID.getAndIncrement();
+		tracker.addImage(i, id);
 
 		try {
-			tracker.waitForID(0);
+			tracker.waitForID(id);
 		} catch (InterruptedException IE) {
-			System.out.println("Error waitForID(0)");
+			System.out.println("Error waitForID(" + id + ")");
 		}
-		tracker.removeImage(i);
+		tracker.removeImage(i, id);
 		return i;
 	}
 
+	/**
+	 * Loads an image from the file system in the background and converts it to
+	 * BufferedImage. Requests for a file that is already loading share the
+	 * same CompletableFuture and the same image, so it should not be changed
+	 * or the future cancelled by one of the callers.
+	 * 
+	 * @param filename
+	 *            Name of the PNG image to load from the file system. Can be
+	 *            loaded with or without .png extension
+	 * @return CompletableFuture completed with the loaded image, or completed
+	 *         exceptionally if the image could not be loaded
+	 */
+	public CompletableFuture<BufferedImage> loadImageAsync(String filename) {
+		final String path = imagePath(filename);
+		final ImageCache cache = this.cache;
+		BufferedImage cached = cache != null ? cache.get(path) : null;
+		if (cached != null)
+			return CompletableFuture.completedFuture(cached);
+		return loadAsync("image:" + path, new Supplier<BufferedImage>() {
+			@Override
+			public BufferedImage get() {
+				URL url = getURL(path);
+				if (url == null)
+					throw new UncheckedIOException(new FileNotFoundException(path));
+				try {
+					BufferedImage image = ImageIO.read(url);
+					if (image == null)
+						throw new IOException("Unsupported image " + path);
+					if (image.getType() != BufferedImage.TYPE_INT_ARGB)
+						image = toBufferedImage(image);
+					if (cache != null)
+						cache.put(path, image);
+					return image;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Opens an Object from the file system in the background. Used for loading
+	 * a saved AnimationGroup without stalling the caller. Requests for a file
+	 * that is already loading share the same CompletableFuture and the same
+	 * Object. Archives in the .frm2 format are read in the background with
+	 * AnimationArchive.readAsync or openAsync instead.
+	 * 
+	 * @param fileLocation
+	 *            Name and location of the Object to open
+	 * @param compressed
+	 *            true if Object is compressed
+	 * @return CompletableFuture completed with the Object, or completed
+	 *         exceptionally if it could not be opened
+	 */
+	public CompletableFuture<Object> openObjectAsync(final String fileLocation, final boolean compressed) {
+		return loadAsync("object:" + compressed + ":" + fileLocation, new Supplier<Object>() {
+			@Override
+			public Object get() {
+				Object o = openObject(fileLocation, compressed);
+				if (o == null)
+					throw new UncheckedIOException(new IOException("Could not open " + fileLocation));
+				return o;
+			}
+		});
+	}
+
+	/**
+	 * Opens an Object from the file system in the background
+	 * 
+	 * @param fileLocation
+	 *            Name and location of the Object to open
+	 * @return CompletableFuture completed with the Object, or completed
+	 *         exceptionally if it could not be opened
+	 */
+	public CompletableFuture<Object> openObjectAsync(String fileLocation) {
+		return openObjectAsync(fileLocation, false);
+	}
+
+	/**
+	 * Sets the Executor used for loading in the background
+	 * 
+	 * @param loader
+	 *            Executor to load with, null for the shared pool
+	 */
+	public void setLoader(Executor loader) {
+		this.loader = loader;
+	}
+
+	/**
+	 * Sets the ImageCache loaded images are kept in. Images are not kept
+	 * unless this is set. Kept images are given to every caller that loads
+	 * them, so they must not be drawn into. {@link ImageCache#getShared()}
+	 * can be set on several Helpers to share one ImageCache.
+	 * 
+	 * @param cache
+	 *            ImageCache to keep images in, null to not keep them
+	 */
+	public void setImageCache(ImageCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Gets the ImageCache loaded images are kept in
+	 * 
+	 * @return ImageCache images are kept in, null if they are not kept
+	 */
+	public ImageCache getImageCache() {
+		return cache;
+	}
+
+	/**
+	 * Runs a load on the loader unless the same load is already running
+	 * 
+	 * @param key
+	 *            What is being loaded
+	 * @param task
+	 *            Loads and returns the result
+	 * @return CompletableFuture of the load that is running
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> CompletableFuture<T> loadAsync(final String key, final Supplier<T> task) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		CompletableFuture<?> running = pending.putIfAbsent(key, future);
+		if (running != null)
+			return (CompletableFuture<T>) running;
+		Runnable load = new Runnable() {
+			@Override
+			public void run() {
+				T result;
+				try {
+					result = task.get();
+				} catch (Throwable t) {
+					pending.remove(key, future);
+					future.completeExceptionally(t);
+					return;
+				}
+				pending.remove(key, future);
+				future.complete(result);
+			}
+		};
+		try {
+			(loader != null ? loader : sharedLoader()).execute(load);
+		} catch (RejectedExecutionException e) {
+			pending.remove(key, future);
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * Gets the shared pool used for loading in the background
+	 * 
+	 * @return Pool of daemon threads
+	 */
+	private static synchronized Executor sharedLoader() {
+		if (sharedLoader == null)
+			sharedLoader = Executors.newFixedThreadPool(LOADER_THREADS, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Helper-loader-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		return sharedLoader;
+	}
+
+	/**
+	 * Gets the location of an image in the default image location
+	 * 
+	 * @param filename
+	 *            Name of the PNG image with or without .png extension
+	 * @return Location of the image
+	 */
+	private String imagePath(String filename) {
+		return ImageLocation + filename + (filename.endsWith(".png") ? "" : ".png");
+	}
+
 	/**
 	 * Gets the URL of the file being loaded
 	 * 
@@ -136,7 +348,9 @@ public class Helper {
 	}
 
 	/**
-	 * Loads an image and converts it to BufferedImage
+	 * Loads an image and converts it to BufferedImage. If an ImageCache is set
+	 * the image is kept in it, so loading it again returns the same
+	 * BufferedImage.
 	 * 
 	 * @param filename
 	 *            Name of file to be loaded
@@ -144,7 +358,12 @@ public class Helper {
 	 */
 	public BufferedImage loadBufferedImage(String filename) {
 		Image i = loadImage(filename);
-		return toBufferedImage(i);
+		if (i instanceof BufferedImage)
+			return (BufferedImage) i;
+		BufferedImage bi = toBufferedImage(i);
+		if (cache != null)
+			cache.put(imagePath(filename), bi);
+		return bi;
 	}
 
 	/**
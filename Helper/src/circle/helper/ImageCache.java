@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.helper;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ImageCache keeps decoded images so loading the same image again does not
+ * read and convert it again. Images are keyed by the location they were
+ * loaded from. When the images kept take more bytes than allowed, the least
+ * recently used images are dropped until they fit.
+ * <p>
+ * In soft reference mode the images are only softly held, so the garbage
+ * collector may also drop them when memory runs low. The images given out are
+ * shared by every caller and should not be changed.
+ */
+public class ImageCache {
+	/**
+	 * Bytes of images the shared ImageCache keeps by default
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	// ImageCache Helpers can share
+	private static final ImageCache shared = new ImageCache(DEFAULT_MAX_BYTES);
+	// Entries in least recently used order
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	// Soft references cleared by the garbage collector
+	private final ReferenceQueue<BufferedImage> cleared = new ReferenceQueue<BufferedImage>();
+	// Most bytes of images to keep
+	private long maxBytes;
+	// Bytes of the images kept
+	private long bytes;
+	// True if images are only softly held
+	private boolean soft;
+	private long hits, misses, evictions;
+
+	/**
+	 * Creates a new empty ImageCache
+	 * 
+	 * @param maxBytes
+	 *            Most bytes of images to keep
+	 */
+	public ImageCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Gets an ImageCache that can be set on several Helpers so they share the
+	 * images kept
+	 * 
+	 * @return The shared ImageCache
+	 */
+	public static ImageCache getShared() {
+		return shared;
+	}
+
+	/**
+	 * Gets a kept image
+	 * 
+	 * @param key
+	 *            Location the image was loaded from
+	 * @return The image or null if it is not kept
+	 */
+	public synchronized BufferedImage get(String key) {
+		expunge();
+		Entry e = entries.get(key);
+		BufferedImage image = e == null ? null : e.image();
+		if (image == null) {
+			if (e != null)
+				drop(key);
+			misses++;
+			return null;
+		}
+		hits++;
+		return image;
+	}
+
+	/**
+	 * Keeps an image, dropping the least recently used images if there is no
+	 * longer room for every image. An image larger than the most bytes to keep
+	 * is not kept.
+	 * 
+	 * @param key
+	 *            Location the image was loaded from
+	 * @param image
+	 *            Image to keep
+	 */
+	public synchronized void put(String key, BufferedImage image) {
+		expunge();
+		drop(key);
+		long size = sizeOf(image);
+		if (size > maxBytes)
+			return;
+		entries.put(key, new Entry(key, image, size, soft ? cleared : null));
+		bytes += size;
+		trim();
+	}
+
+	/**
+	 * Stops keeping an image
+	 * 
+	 * @param key
+	 *            Location the image was loaded from
+	 */
+	public synchronized void remove(String key) {
+		drop(key);
+	}
+
+	/**
+	 * Stops keeping every image
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+		while (cleared.poll() != null)
+			;
+	}
+
+	/**
+	 * Sets the most bytes of images to keep, dropping the least recently used
+	 * images that no longer fit
+	 * 
+	 * @param maxBytes
+	 *            Most bytes of images to keep
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		trim();
+	}
+
+	/**
+	 * Gets the most bytes of images to keep
+	 * 
+	 * @return Most bytes of images to keep
+	 */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Sets whether images are only softly held so the garbage collector can
+	 * drop them when memory runs low. Images already kept are changed over.
+	 * 
+	 * @param soft
+	 *            true to softly hold images
+	 */
+	public synchronized void setSoftReferences(boolean soft) {
+		if (this.soft == soft)
+			return;
+		this.soft = soft;
+		expunge();
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Entry> me = it.next();
+			Entry e = me.getValue();
+			BufferedImage image = e.image();
+			if (image == null) {
+				bytes -= e.bytes;
+				it.remove();
+			} else {
+				me.setValue(new Entry(e.key, image, e.bytes, soft ? cleared : null));
+			}
+		}
+	}
+
+	/**
+	 * Gets whether images are only softly held
+	 * 
+	 * @return true if images are softly held
+	 */
+	public synchronized boolean isSoftReferences() {
+		return soft;
+	}
+
+	/**
+	 * Gets the number of times a kept image was found
+	 * 
+	 * @return Number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of times an image was not kept
+	 * 
+	 * @return Number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the number of images dropped, either to make room or by the garbage
+	 * collector
+	 * 
+	 * @return Number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Gets the bytes of the images kept
+	 * 
+	 * @return Bytes of the images kept
+	 */
+	public synchronized long getBytes() {
+		expunge();
+		return bytes;
+	}
+
+	/**
+	 * Gets the number of images kept
+	 * 
+	 * @return Number of images kept
+	 */
+	public synchronized int size() {
+		expunge();
+		return entries.size();
+	}
+
+	/**
+	 * Gets the bytes of pixel data an image holds
+	 * 
+	 * @param image
+	 *            Image to measure
+	 * @return Bytes of pixel data
+	 */
+	public static long sizeOf(BufferedImage image) {
+		DataBuffer data = image.getRaster().getDataBuffer();
+		return (long) data.getSize() * data.getNumBanks() * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+	}
+
+	/**
+	 * Drops the least recently used images until the images kept fit
+	 */
+	private void trim() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (bytes > maxBytes && it.hasNext()) {
+			bytes -= it.next().bytes;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Drops the images the garbage collector has cleared
+	 */
+	private void expunge() {
+		Entry e;
+		while ((e = (Entry) cleared.poll()) != null)
+			if (entries.get(e.key) == e) {
+				entries.remove(e.key);
+				bytes -= e.bytes;
+				evictions++;
+			}
+	}
+
+	/**
+	 * Removes an entry and its bytes
+	 * 
+	 * @param key
+	 *            Location the image was loaded from
+	 */
+	private void drop(String key) {
+		Entry e = entries.remove(key);
+		if (e != null)
+			bytes -= e.bytes;
+	}
+
+	/**
+	 * Kept image, held strongly or softly
+	 */
+	private static class Entry extends SoftReference<BufferedImage> {
+		final String key;
+		final long bytes;
+		// Strong reference, null in soft reference mode
+		final BufferedImage strong;
+
+		Entry(String key, BufferedImage image, long bytes, ReferenceQueue<BufferedImage> queue) {
+			super(image, queue);
+			this.key = key;
+			this.bytes = bytes;
+			this.strong = queue == null ? image : null;
+		}
+
+		BufferedImage image() {
+			return strong != null ? strong : get();
+		}
+	}
+}
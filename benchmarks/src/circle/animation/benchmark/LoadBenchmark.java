@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import circle.animation.AnimationArchive;
+import circle.animation.AnimationGroup;
+
+/**
+ * Measures opening the Presents Animations and calling init(), from a
+ * serialized .frm and from a .frm2 archive. Both are read from memory so the
+ * disk is not timed.
+ * <p>
+ * The .frm is written by setup in the current format, because .frm files
+ * holding ImageIcons only load on the JDK that wrote them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class LoadBenchmark {
+
+	private byte[] frm;
+	private byte[] frm2;
+
+	@Setup
+	public void setup() throws IOException {
+		frm2 = Sprites.read(Sprites.PRESENTS);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ObjectOutputStream save = new ObjectOutputStream(out);
+		save.writeObject(Sprites.presents());
+		save.close();
+		frm = out.toByteArray();
+	}
+
+	@Benchmark
+	public AnimationGroup openFrm() throws IOException, ClassNotFoundException {
+		ObjectInputStream restore = new ObjectInputStream(new ByteArrayInputStream(frm));
+		AnimationGroup group = (AnimationGroup) restore.readObject();
+		restore.close();
+		group.init();
+		return group;
+	}
+
+	@Benchmark
+	public AnimationGroup openFrm2() throws IOException {
+		AnimationGroup group = AnimationArchive.read(new ByteArrayInputStream(frm2));
+		group.init();
+		return group;
+	}
+}
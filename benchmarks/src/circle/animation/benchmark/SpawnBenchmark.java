@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation.benchmark;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import circle.animation.AnimationGroup;
+
+/**
+ * Measures how many Animations can be added per millisecond. Each invocation
+ * adds a batch and removes it again, so the AnimationGroup stays the same
+ * size and the removed Animations' room is reused.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class SpawnBenchmark {
+
+	private static final int BATCH = 1000;
+
+	private AnimationGroup group;
+	private String[] names;
+	private final UUID[] ids = new UUID[BATCH];
+	private final long[] handles = new long[BATCH];
+
+	@Setup
+	public void setup() throws IOException {
+		group = Sprites.presents();
+		names = group.getNames();
+		group.ensureCapacity(BATCH);
+	}
+
+	/**
+	 * Adds through the UUID API, creating a UUID for each Animation
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void add() {
+		for (int i = 0; i < BATCH; i++)
+			ids[i] = group.add(names[i % names.length], i, i, false);
+		for (int i = 0; i < BATCH; i++)
+			group.remove(ids[i]);
+	}
+
+	/**
+	 * Adds through the handle API, which creates no objects
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void spawn() {
+		for (int i = 0; i < BATCH; i++)
+			handles[i] = group.spawn(names[i % names.length], i, i, 0);
+		for (int i = 0; i < BATCH; i++)
+			group.kill(handles[i]);
+	}
+
+	/**
+	 * Adds rotated Animations through the handle API
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void spawnRotated() {
+		for (int i = 0; i < BATCH; i++)
+			handles[i] = group.spawn(names[i % names.length], i, i, i % 360 - 180, 5, 0);
+		for (int i = 0; i < BATCH; i++)
+			group.kill(handles[i]);
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation.benchmark;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import circle.animation.internal.FrameBuffer;
+import circle.helper.Helper;
+
+/**
+ * Measures splitting a sheet of 64 frames. A FrameBuffer splits the sheet
+ * and trims the transparent edges of each frame, Helper only splits.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class SplitImageBenchmark {
+
+	private static final int FRAME = 64;
+	private static final int ACROSS = 8;
+
+	private final Dimension frameSize = new Dimension(FRAME, FRAME);
+	// Helper() opens a JFrame, which headless Java cannot
+	private final Helper helper = new Helper(new Canvas());
+	private BufferedImage sheet;
+
+	@Setup
+	public void setup() {
+		sheet = new BufferedImage(FRAME * ACROSS, FRAME * ACROSS, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = sheet.createGraphics();
+		g2.setColor(Color.RED);
+		// a growing circle surrounded by transparency in each frame
+		for (int i = 0; i < ACROSS * ACROSS; i++) {
+			int size = 8 + i * (FRAME - 8) / (ACROSS * ACROSS);
+			int x = i % ACROSS * FRAME + (FRAME - size) / 2;
+			int y = i / ACROSS * FRAME + (FRAME - size) / 2;
+			g2.fillOval(x, y, size, size);
+		}
+		g2.dispose();
+	}
+
+	@Benchmark
+	public FrameBuffer frameBuffer() {
+		return new FrameBuffer(sheet, frameSize);
+	}
+
+	@Benchmark
+	public BufferedImage[] helperSplitImage() {
+		return helper.SplitImage(sheet, FRAME, FRAME);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016, Brian Jensen
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     Redistributions of source code must retain the above copyright notice,
+ *     this list of conditions and the following disclaimer.
+ *     
+ *     Redistributions in binary form must reproduce the above copyright notice,
+ *     this list of conditions and the following disclaimer in the documentation
+ *     and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package circle.animation.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import circle.animation.AnimationArchive;
+import circle.animation.AnimationGroup;
+
+/**
+ * Loads the Animations the benchmarks display and places them the same way
+ * on every run
+ */
+final class Sprites {
+
+	/**
+	 * Archive of the Presents Animations, from the examples' resources
+	 */
+	static final String PRESENTS = "/Data/Sprites/Animations/Presents.frm2";
+
+	/**
+	 * Width of the screen Animations are placed on
+	 */
+	static final int WIDTH = 1280;
+
+	/**
+	 * Height of the screen Animations are placed on
+	 */
+	static final int HEIGHT = 720;
+
+	private Sprites() {
+	}
+
+	/**
+	 * Reads a resource into memory so loading it can be timed without the
+	 * disk
+	 * 
+	 * @param resource
+	 *            Name of the resource on the classpath
+	 * @return bytes of the resource
+	 * @throws IOException
+	 *             if the resource is missing or cannot be read
+	 */
+	static byte[] read(String resource) throws IOException {
+		InputStream in = Sprites.class.getResourceAsStream(resource);
+		if (in == null)
+			throw new IOException("Missing resource " + resource);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int n; (n = in.read(buffer)) > 0;)
+				out.write(buffer, 0, n);
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Loads and initializes the Presents Animations
+	 * 
+	 * @return AnimationGroup ready to display the Presents Animations
+	 * @throws IOException
+	 *             if the archive cannot be read
+	 */
+	static AnimationGroup presents() throws IOException {
+		AnimationGroup group = AnimationArchive.read(new ByteArrayInputStream(read(PRESENTS)));
+		group.init();
+		return group;
+	}
+
+	/**
+	 * Displays looping Animations at positions spread over the screen
+	 * 
+	 * @param group
+	 *            AnimationGroup to display the Animations in
+	 * @param count
+	 *            Number of Animations to display
+	 * @param rotated
+	 *            true to display every Animation rotated and spinning
+	 */
+	static void populate(AnimationGroup group, int count, boolean rotated) {
+		String[] names = group.getNames();
+		Random random = new Random(42);
+		group.ensureCapacity(count);
+		for (int i = 0; i < count; i++) {
+			String name = names[i % names.length];
+			int x = random.nextInt(WIDTH) - 32;
+			int y = random.nextInt(HEIGHT) - 32;
+			if (rotated)
+				group.spawn(name, x, y, random.nextInt(360) - 180, 5, AnimationGroup.LOOP);
+			else
+				group.spawn(name, x, y, AnimationGroup.LOOP);
+		}
+	}
+}
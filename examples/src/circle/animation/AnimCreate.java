@@ -1,6 +1,7 @@
 package circle.animation;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 
 import javax.swing.JPanel;
 
@@ -55,15 +56,26 @@ public class AnimCreate extends JPanel {
 		 * */
 		helper.saveObject(ag, "../GAME Presents/src/Data/Sprites/Animations/animation.frm", true);
 		helper.saveObject(ag, "src/Data/Sprites/Animations/Presents.frm");
+		saveArchive(ag, "src/Data/Sprites/Animations/Presents.frm2");
 		/*
 		 * Angry Ghost Exorcism Animations
 		 * */
 //		helper.saveObject(ag, "../GAME AngryGhostExorcism/src/Data/Sprites/Animations/animation.frm");
 //		helper.saveObject(ag, "src/Data/Sprites/Animations/AngryGhosts.frm");
+//		saveArchive(ag, "src/Data/Sprites/Animations/AngryGhosts.frm2");
 		/*
 		 * Falling Ball Animations
 		 * */
 //		helper.saveObject(ag, "../GAME FallingBall/src/Data/Sprites/Animations/animation.frm", true);
 //		helper.saveObject(ag, "src/Data/Sprites/Animations/FallingBall.frm");
+//		saveArchive(ag, "src/Data/Sprites/Animations/FallingBall.frm2");
+	}
+
+	private void saveArchive(AnimationGroup ag, String file) {
+		try {
+			AnimationArchive.write(ag, file, true);
+		} catch (IOException e) {
+			System.out.println("Could not save " + file);
+		}
 	}
 }
@@ -4,16 +4,19 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.MouseInfo;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.io.InputStream;
 
+import javax.management.JMException;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 
-import circle.animation.internal.Position;
 import circle.helper.Helper;
 
 public class AnimTest extends JPanel implements Runnable {
@@ -52,6 +55,7 @@ public class AnimTest extends JPanel implements Runnable {
 	private final int FrameSizeY = AppletSizeY + 28;
 
 	public AnimationGroup AH = new AnimationGroup();
+	private DirtyRepainter repainter;
 
 	public static void main(String[] args) {
 		new AnimTest();
@@ -84,21 +88,44 @@ public class AnimTest extends JPanel implements Runnable {
 				quit();
 			}
 		});
-		Helper helper = new Helper();
-		AH = (AnimationGroup) helper.openObject("/Data/Sprites/Animations/Presents.frm");
-		//test = AH.getNames();
 		long start = System.currentTimeMillis();
+		AnimationGroup loaded = null;
+		try (InputStream archive = AnimTest.class.getResourceAsStream("/Data/Sprites/Animations/Presents.frm2")) {
+			if (archive != null)
+				loaded = AnimationArchive.read(archive);
+		} catch (IOException e) {
+			System.out.println("Could not read Presents.frm2: " + e.getMessage());
+		}
+		if (loaded == null) {
+			System.out.println("Could not load Presents.frm2, loading Presents.frm");
+			Helper helper = new Helper();
+			loaded = (AnimationGroup) helper.openObject("/Data/Sprites/Animations/Presents.frm");
+		}
+		AH = loaded;
+		//test = AH.getNames();
 		AH.init();
 		long stop = System.currentTimeMillis();
 		System.out.println(stop - start);
+		// run() updates on its own thread so paintComponent draws snapshots
+		AH.setSnapshotMode(true);
+		// Only repaint the parts of the panel the Animations changed
+		AH.setDirtyTracking(16);
+		AH.ensureCapacity(4096);
+		// Update and draw times can be watched in JConsole
+		AH.setMetricsEnabled(true);
+		try {
+			AH.getMetrics().register("AnimTest");
+		} catch (JMException e) {
+			System.out.println("Could not register metrics " + e.getMessage());
+		}
+		repainter = new DirtyRepainter(AH, this);
 		this.addMouseListener(new MouseAdapter() {
 
 			@Override
 			public void mousePressed(MouseEvent arg0) {
 				if (arg0.getButton() == 1) {
 					getMouse();
-					Position xy = new Position(M_x - 32, M_y - 32);
-					AH.add(test[startTest], xy, false);
+					AH.spawn(test[startTest], M_x - 32, M_y - 32, 0);
 				}
 				if (arg0.getButton() == 3) {
 					startTest++;
@@ -113,8 +140,8 @@ public class AnimTest extends JPanel implements Runnable {
 			public void mouseDragged(MouseEvent e) {
 				if (e.getModifiers() == 16) {
 					getMouse();
-					Position xy = new Position(M_x - 23, M_y - 23);
-					AH.add(test[startTest], xy, false);
+					// spawn reuses the room of finished Animations
+					AH.spawn(test[startTest], M_x - 23, M_y - 23, 0);
 				}
 			}
 		});
@@ -147,7 +174,7 @@ public class AnimTest extends JPanel implements Runnable {
 				updateGame();
 				delta--;
 			}
-			repaint();
+			repainter.repaint();
 		}
 	}
 
@@ -157,7 +184,11 @@ public class AnimTest extends JPanel implements Runnable {
 		super.paintComponents(g2);
 		g2.setColor(Color.WHITE);
 		g2.fillRect(0, 0, this.getWidth(), this.getHeight());
-		AH.draw(g2);
+		Rectangle clip = g2.getClipBounds();
+		if (clip != null)
+			AH.draw(g2, clip);
+		else
+			AH.draw(g2);
 	}
 
 	private void quit() {